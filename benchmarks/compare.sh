@@ -0,0 +1,37 @@
+#!/usr/bin/env bash
+# Compares two JMH CSV reports produced by run.sh.
+# Prints ns/tick and bytes allocated per tick side by side with the relative change.
+# Usage: benchmarks/compare.sh results/<old>.csv results/<new>.csv
+
+set -eu
+if [ "$#" -ne 2 ]; then
+    echo "Usage: $0 OLD.csv NEW.csv" >&2
+    exit 1
+fi
+
+awk -F',' '
+function key(   k, i) {
+    k = $1
+    for (i = 8; i <= NF; i++) k = k " " $i
+    return k
+}
+FNR == 1 { next }
+{
+    gsub(/"/, "")
+    metric = ($1 ~ /gc\.alloc\.rate\.norm$/) ? "B/op" : (($1 ~ /:/) ? "" : "ns/op")
+    if (metric == "") next
+    sub(/:.*$/, "", $1)
+    k = key() " [" metric "]"
+    if (FNR == NR) { old[k] = $5 } else { cur[k] = $5; order[++n] = k }
+}
+END {
+    printf "%-80s %14s %14s %9s\n", "Benchmark", "old", "new", "change"
+    for (i = 1; i <= n; i++) {
+        k = order[i]
+        if (k in old && old[k] != 0) {
+            printf "%-80s %14.2f %14.2f %+8.1f%%\n", k, old[k], cur[k], (cur[k] - old[k]) * 100.0 / old[k]
+        } else {
+            printf "%-80s %14s %14.2f %9s\n", k, "-", cur[k], "new"
+        }
+    }
+}' "$1" "$2"
@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+# Builds the simulator and the JMH benchmarks, then runs them with the GC profiler.
+# Results are written to benchmarks/results/<commit>.csv so runs from different commits can be diffed.
+# Usage: benchmarks/run.sh [extra JMH arguments, e.g. TickLoopBenchmark.update -p carsPerLane=1000]
+
+set -eu
+cd "$(dirname "$0")"
+
+(cd .. && mvn -B -q -DskipTests install)
+mvn -B -q package
+
+mkdir -p results
+revision="$(git rev-parse --short HEAD 2>/dev/null || echo local)"
+java -jar target/benchmarks.jar -prof gc -rf csv -rff "results/${revision}.csv" "$@"
+echo "Results written to benchmarks/results/${revision}.csv"
@@ -0,0 +1,67 @@
+package traffic.sim;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import traffic.sim.algorithms.AlgorithmType;
+import traffic.sim.network.RoadNetwork;
+
+import java.util.concurrent.TimeUnit;
+
+// Speedup of the per-intersection parallel phase: compare the threads=1 score with the others.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelTickBenchmark {
+    private static final double DELTA = 1.0 / 60.0;
+    private static final double PREFILL_DELTA = 0.1;
+    private static final int PREFILL_TICKS = 600;
+    private static final long SEED = 42L;
+
+    @Param({"100"})
+    public int gridSize;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int threads;
+
+    @Param({"MAX_PRESSURE"})
+    public AlgorithmType algorithm;
+
+    private SimulationEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RoadNetwork network = RoadNetwork.grid(gridSize, gridSize, 400.0, 450.0, 300.0);
+        engine = new SimulationEngine(network, SEED);
+        engine.setAlgorithm(algorithm::create);
+        engine.reset();
+        engine.setParallelism(threads);
+        for (int i = 0; i < PREFILL_TICKS; i++) {
+            engine.update(PREFILL_DELTA);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.setParallelism(1);
+    }
+
+    @Benchmark
+    public double update() {
+        engine.update(DELTA);
+        return engine.getTotalWait();
+    }
+}
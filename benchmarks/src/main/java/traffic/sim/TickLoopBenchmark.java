@@ -0,0 +1,105 @@
+package traffic.sim;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import traffic.sim.algorithms.AlgorithmType;
+import traffic.sim.model.Direction;
+import traffic.sim.model.IntelligentDriverModel;
+import traffic.sim.stats.TrafficStatsManager;
+
+import java.util.concurrent.TimeUnit;
+
+// Each iteration times one batch of TICKS_PER_BATCH calls after a refill, so the refill stays outside the timing
+// without a per-call setup hook, whose own overhead would swamp the sub-microsecond ticks of the small lanes.
+// Single-shot warm-up counts batches rather than time, so the JIT warm-up happens in setUp instead.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, batchSize = TickLoopBenchmark.TICKS_PER_BATCH)
+@Measurement(iterations = 50, batchSize = TickLoopBenchmark.TICKS_PER_BATCH)
+@OperationsPerInvocation(TickLoopBenchmark.TICKS_PER_BATCH)
+@Fork(1)
+@State(Scope.Thread)
+public class TickLoopBenchmark {
+    private static final double DELTA = 1.0 / 60.0;
+    // One simulated second: few enough ticks that a lane loses at most a car or two before the next refill.
+    static final int TICKS_PER_BATCH = 60;
+    private static final long SEED = 42L;
+    private static final long WARM_UP_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param({"10", "1000", "100000"})
+    public int carsPerLane;
+
+    @Param({"FIXED_TIME", "GREEN_WAVE", "MAX_PRESSURE"})
+    public AlgorithmType algorithm;
+
+    @Param({"constant", "idm"})
+    public String carFollowing;
+
+    private SimulationEngine engine;
+    private TrafficStatsManager statsManager;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) {
+        engine = new SimulationEngine(900, 600, SEED);
+        engine.setCarFollowing("idm".equals(carFollowing) ? IntelligentDriverModel.standard() : null);
+        engine.setAlgorithm(algorithm::create);
+        engine.reset();
+        statsManager = engine.getStatsManager();
+        // Only the body under test, so the JIT profile matches the measured batches.
+        Runnable body = switch (params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1)) {
+            case "updateCars" -> this::updateCars;
+            case "statsUpdate" -> this::statsUpdate;
+            default -> this::update;
+        };
+        long deadline = System.nanoTime() + WARM_UP_NANOS;
+        while (System.nanoTime() - deadline < 0L) {
+            topUp();
+            for (int i = 0; i < TICKS_PER_BATCH; i++) {
+                body.run();
+            }
+        }
+    }
+
+    // Cars leave the world as the benchmark runs; refilling before every batch keeps the lane population at the
+    // requested size.
+    @Setup(Level.Iteration)
+    public void topUp() {
+        for (Direction direction : DIRECTIONS) {
+            int missing = carsPerLane - engine.getLaneCars().get(direction).size();
+            if (missing > 0) {
+                engine.populateLane(direction, missing);
+            }
+        }
+    }
+
+    @Benchmark
+    public double update() {
+        engine.update(DELTA);
+        return engine.getTotalWait();
+    }
+
+    @Benchmark
+    public int updateCars() {
+        engine.updateCars(DELTA);
+        return engine.getLaneCars().get(Direction.EAST).size();
+    }
+
+    @Benchmark
+    public double statsUpdate() {
+        statsManager.update(DELTA, engine.getSimulationClock(), engine.getLaneCars().values());
+        return statsManager.getLatestTotalWait();
+    }
+}
@@ -0,0 +1,50 @@
+package traffic.sim;
+
+import traffic.sim.model.Lane;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Engine state taken by SimulationEngine.captureSnapshot. Everything but the cars is serialized at capture time;
+// the car columns are shared copy-on-write with the lanes, so writeTo can run on another thread.
+public final class EngineSnapshot {
+    static final int MAGIC = 0x54534E50; // "TSNP"
+    static final int VERSION = 7;
+
+    private final double simulationTime;
+    private final byte[] engineState;
+    private final Lane.FrozenColumns[] lanes;
+
+    EngineSnapshot(double simulationTime, byte[] engineState, Lane.FrozenColumns[] lanes) {
+        this.simulationTime = simulationTime;
+        this.engineState = engineState;
+        this.lanes = lanes;
+    }
+
+    public double getSimulationTime() {
+        return simulationTime;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(engineState.length);
+        data.write(engineState);
+        data.writeInt(lanes.length);
+        for (Lane.FrozenColumns lane : lanes) {
+            lane.writeTo(data);
+        }
+        data.flush();
+        release();
+    }
+
+    // Lets the lanes reuse the frozen columns; writeTo does this itself, call it for a snapshot that is dropped.
+    public void release() {
+        for (Lane.FrozenColumns lane : lanes) {
+            lane.release();
+        }
+    }
+}
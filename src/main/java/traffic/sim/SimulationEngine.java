@@ -1,27 +1,57 @@
 package traffic.sim;
 
-import javafx.scene.paint.Color;
 import traffic.sim.algorithms.SignalAlgorithm;
 import traffic.sim.controller.TrafficController;
+import traffic.sim.demand.ArrivalModel;
+import traffic.sim.demand.ArrivalProcess;
+import traffic.sim.demand.ArrivalScheduler;
+import traffic.sim.demand.PlatoonArrivals;
+import traffic.sim.diagnostics.PhaseTimer;
+import traffic.sim.diagnostics.Recorder;
+import traffic.sim.metrics.MetricsSnapshot;
 import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.IntelligentDriverModel;
 import traffic.sim.model.Intersection;
-import traffic.sim.model.TrafficLight;
+import traffic.sim.model.Lane;
+import traffic.sim.model.VehicleClass;
+import traffic.sim.network.NetworkNode;
+import traffic.sim.network.RoadLink;
+import traffic.sim.network.RoadNetwork;
+import traffic.sim.stats.PerformanceTracker;
 import traffic.sim.stats.TrafficStatsManager;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 public class SimulationEngine {
+    // Phases of a tick, timed into JFR. Signals include capturing each lane's leader for the car pass.
+    public enum TickPhase {
+        ARRIVALS,
+        SIGNALS,
+        CARS,
+        HANDOVER,
+        STATS
+    }
+
     private static final double CAR_SPEED = 90.0;
     private static final double CAR_LENGTH = 26.0;
     private static final double MIN_GAP = 6.0;
     private static final double CAR_WIDTH = 16.0;
-    private static final double SPAWN_INTERVAL_MIN = 1.0;
-    private static final double SPAWN_INTERVAL_MAX = 5.0;
+    // Per-approach platoon headways; four approaches together average one platoon every 3 s, as before.
+    private static final double SPAWN_INTERVAL_MIN = 4.0;
+    private static final double SPAWN_INTERVAL_MAX = 20.0;
     private static final int WAVE_SIZE_MIN = 1;
     private static final int WAVE_SIZE_MAX = 3;
     private static final double WAVE_GAP_MIN = 50.0;
@@ -29,236 +59,565 @@ public class SimulationEngine {
     private static final double INTERSECTION_HALF_SIZE = 45.0;
     private static final double LANE_OFFSET = 28.0;
     private static final double SPAWN_OFFSET = 140.0;
-
-    private final double width;
-    private final double height;
-
-    private final Random random = new Random();
-    private final Intersection intersection = new Intersection();
-    private final TrafficController controller = new TrafficController(intersection);
-    private final Map<Direction, List<Car>> laneCars = new EnumMap<>(Direction.class);
-    private final Map<Direction, Double> laneCoordinate = new EnumMap<>(Direction.class);
-
-    private final Color[] palette = new Color[]{
-            Color.DODGERBLUE, Color.ORANGE, Color.CRIMSON,
-            Color.SEAGREEN, Color.GOLDENROD, Color.MEDIUMPURPLE
-    };
-
-    private SignalAlgorithm algorithm;
-    private double spawnTimer;
+    private static final int COLOR_VARIANTS = 6;
+    // Traffic mix under car following; the constant-speed model only has cars.
+    private static final double TRUCK_SHARE = 0.10;
+    private static final double BUS_SHARE = 0.05;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int NODES_PER_TASK = 64;
+    // Longer updates are split into equal sub-steps no longer than this. A car then moves less than the minimum
+    // spacing per step, so it cannot pass the car ahead or a red stop line between two checks, and a signal state
+    // ends at most one step late.
+    private static final double DEFAULT_MAX_STEP = 0.25;
+
+    private final RoadNetwork network;
+    private final List<NetworkNode> nodes;
+    private final NetworkNode primaryNode;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final Lane[] entryLanes;
+    private final NetworkNode[] entryNodes;
+    private long seed;
+    private ArrivalScheduler arrivals;
+
+    private ForkJoinPool pool;
+    private final NodeStep signalsStep = this::updateSignals;
+    private final NodeStep moveCarsStep = this::moveCars;
+    private final PhaseTimer<TickPhase> tickTimer = new PhaseTimer<>("tick", TickPhase.class);
+    private Supplier<? extends SignalAlgorithm> algorithmFactory;
+    private IntelligentDriverModel carFollowing;
+    private double maxStep = DEFAULT_MAX_STEP;
     private double simulationClock;
+    private long spawnedCars;
+    private long completedCars;
     private final TrafficStatsManager statsManager = new TrafficStatsManager();
+    private final PerformanceTracker performanceTracker = new PerformanceTracker();
+    private final Lane.ExitListener exitListener = (lane, cumulativeWait) -> performanceTracker.recordCarFinished(cumulativeWait);
 
     public SimulationEngine(double width, double height) {
-        this.width = width;
-        this.height = height;
-        initLaneStorage();
-        algorithm = null;
+        this(RoadNetwork.singleIntersection(width, height));
+    }
+
+    public SimulationEngine(double width, double height, long seed) {
+        this(RoadNetwork.singleIntersection(width, height), seed);
+    }
+
+    public SimulationEngine(RoadNetwork network) {
+        this(network, new Random().nextLong());
+    }
+
+    public SimulationEngine(RoadNetwork network, long seed) {
+        this.network = network;
+        this.nodes = network.getNodes();
+        this.primaryNode = nodes.get(0);
+        this.seed = seed;
+        List<Lane> entries = new ArrayList<>();
+        List<NetworkNode> entryOwners = new ArrayList<>();
+        initLaneStorage(entries, entryOwners);
+        this.entryLanes = entries.toArray(new Lane[0]);
+        this.entryNodes = entryOwners.toArray(new NetworkNode[0]);
+        this.arrivals = createScheduler(defaultArrivals());
         reset();
     }
 
+    // Spreads consecutive indices over the whole seed space so sibling random streams are uncorrelated.
+    public static long deriveSeed(long base, long index) {
+        long z = base + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     public void reset() {
-        laneCars.values().forEach(List::clear);
-        spawnTimer = randomInterval();
+        lanes.forEach(Lane::clear);
         simulationClock = 0.0;
+        arrivals.reset(simulationClock, approachSeeds(), vehicleClassSeeds());
+        spawnedCars = 0;
+        completedCars = 0;
         statsManager.reset();
-        controller.reset(TrafficController.DirectionGroup.EAST_WEST);
-        if (algorithm != null) {
-            algorithm.reset(controller);
+        performanceTracker.reset();
+        nodes.forEach(NetworkNode::resetSignals);
+    }
+
+    private void initLaneStorage(List<Lane> entries, List<NetworkNode> entryOwners) {
+        for (NetworkNode node : nodes) {
+            for (Direction direction : DIRECTIONS) {
+                double end = node.getOutbound(direction) != null
+                        ? handoffPosition(node, direction)
+                        : exitPosition(direction);
+                Lane lane = new Lane(direction, laneCoordinate(node, direction),
+                        stopLinePosition(node, direction), end, CAR_SPEED, CAR_LENGTH);
+                node.putLane(lane);
+                lanes.add(lane);
+                if (node.isEntry(direction)) {
+                    entries.add(lane);
+                    entryOwners.add(node);
+                }
+            }
+        }
+        for (RoadLink link : network.getLinks()) {
+            Direction direction = link.getDirection();
+            link.getFrom().getLane(direction).connectTo(link.getTo().getLane(direction));
+        }
+    }
+
+    private double laneCoordinate(NetworkNode node, Direction direction) {
+        return switch (direction) {
+            case EAST -> node.getCenterY() - LANE_OFFSET;
+            case WEST -> node.getCenterY() + LANE_OFFSET;
+            case NORTH -> node.getCenterX() + LANE_OFFSET;
+            case SOUTH -> node.getCenterX() - LANE_OFFSET;
+        };
+    }
+
+    // Lane positions grow in the direction of travel: x for EAST, -x for WEST, -y for NORTH, y for SOUTH.
+    private double stopLinePosition(NetworkNode node, Direction direction) {
+        double centerX = node.getCenterX();
+        double centerY = node.getCenterY();
+        return switch (direction) {
+            case EAST -> centerX - INTERSECTION_HALF_SIZE;
+            case WEST -> -(centerX + INTERSECTION_HALF_SIZE);
+            case NORTH -> -(centerY - INTERSECTION_HALF_SIZE);
+            case SOUTH -> centerY + INTERSECTION_HALF_SIZE;
+        };
+    }
+
+    // Cars are handed to the next intersection's lane once they are past the far side of this one.
+    private double handoffPosition(NetworkNode node, Direction direction) {
+        double centerX = node.getCenterX();
+        double centerY = node.getCenterY();
+        return switch (direction) {
+            case EAST -> centerX + INTERSECTION_HALF_SIZE;
+            case WEST -> -(centerX - INTERSECTION_HALF_SIZE);
+            case NORTH -> -(centerY - INTERSECTION_HALF_SIZE);
+            case SOUTH -> centerY + INTERSECTION_HALF_SIZE;
+        };
+    }
+
+    private double exitPosition(Direction direction) {
+        return switch (direction) {
+            case EAST -> network.getWidth() + SPAWN_OFFSET;
+            case WEST, NORTH -> SPAWN_OFFSET;
+            case SOUTH -> network.getHeight() + SPAWN_OFFSET;
+        };
+    }
+
+    private double entryPosition(Direction direction) {
+        return switch (direction) {
+            case EAST, SOUTH -> -SPAWN_OFFSET;
+            case WEST -> -(network.getWidth() + SPAWN_OFFSET);
+            case NORTH -> -(network.getHeight() + SPAWN_OFFSET);
+        };
+    }
+
+    private static ArrivalModel defaultArrivals() {
+        PlatoonArrivals platoons = new PlatoonArrivals(SPAWN_INTERVAL_MIN, SPAWN_INTERVAL_MAX, WAVE_SIZE_MIN, WAVE_SIZE_MAX);
+        return (node, direction) -> platoons;
+    }
+
+    private ArrivalScheduler createScheduler(ArrivalModel model) {
+        ArrivalProcess[] processes = new ArrivalProcess[entryLanes.length];
+        for (int a = 0; a < entryLanes.length; a++) {
+            processes[a] = model.create(entryNodes[a], entryLanes[a].getDirection());
         }
+        return new ArrivalScheduler(processes);
     }
 
-    private void initLaneStorage() {
-        for (Direction direction : Direction.values()) {
-            laneCars.put(direction, new ArrayList<>());
+    // Each approach draws from its own stream, so adding demand on one road does not reshuffle the others.
+    private long[] approachSeeds() {
+        long[] seeds = new long[entryLanes.length];
+        for (int a = 0; a < seeds.length; a++) {
+            seeds[a] = deriveSeed(seed, a);
         }
-        laneCoordinate.put(Direction.EAST, height / 2.0 - LANE_OFFSET);
-        laneCoordinate.put(Direction.WEST, height / 2.0 + LANE_OFFSET);
-        laneCoordinate.put(Direction.NORTH, width / 2.0 + LANE_OFFSET);
-        laneCoordinate.put(Direction.SOUTH, width / 2.0 - LANE_OFFSET);
+        return seeds;
     }
 
-    private double randomInterval() {
-        return SPAWN_INTERVAL_MIN + random.nextDouble() * (SPAWN_INTERVAL_MAX - SPAWN_INTERVAL_MIN);
+    private long[] vehicleClassSeeds() {
+        long[] seeds = approachSeeds();
+        for (int a = 0; a < seeds.length; a++) {
+            seeds[a] = deriveSeed(seeds[a], 0);
+        }
+        return seeds;
     }
 
-    public void setAlgorithm(SignalAlgorithm algorithm) {
-        this.algorithm = algorithm;
-        controller.reset(TrafficController.DirectionGroup.EAST_WEST);
+    // Replaces the arrival process on every entry approach; the schedule restarts from the current clock.
+    public void setArrivalModel(ArrivalModel model) {
+        arrivals = createScheduler(model == null ? defaultArrivals() : model);
+        arrivals.reset(simulationClock, approachSeeds(), vehicleClassSeeds());
+    }
+
+    // Every intersection runs its own algorithm instance, created by the factory. The clock restarts, and the
+    // arrival schedule with it, since next-arrival times are absolute.
+    public void setAlgorithm(Supplier<? extends SignalAlgorithm> algorithmFactory) {
+        this.algorithmFactory = algorithmFactory;
+        for (NetworkNode node : nodes) {
+            node.setAlgorithm(algorithmFactory == null ? null : algorithmFactory.get());
+            node.resetSignals();
+        }
         statsManager.reset();
+        performanceTracker.reset();
         simulationClock = 0.0;
-        if (this.algorithm != null) {
-            this.algorithm.reset(controller);
+        arrivals.reset(simulationClock, approachSeeds(), vehicleClassSeeds());
+    }
+
+    // Switches every lane to car following with the given model, or back to constant speed for null. Cars on the
+    // road keep their positions and carry on from their current speed.
+    public void setCarFollowing(IntelligentDriverModel model) {
+        carFollowing = model;
+        for (Lane lane : lanes) {
+            lane.setDriverModel(model);
+        }
+    }
+
+    public IntelligentDriverModel getCarFollowing() {
+        return carFollowing;
+    }
+
+    // Uses a fork-join pool of the given size to step intersections in parallel; 1 steps them on the caller thread.
+    // Results are bit-identical for any parallelism because a node's step only reads state frozen before the phase.
+    public void setParallelism(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    public void setMaxStep(double seconds) {
+        if (!(seconds > 0.0)) {
+            throw new IllegalArgumentException("Maximum step must be positive: " + seconds);
         }
+        maxStep = seconds;
     }
 
+    public double getMaxStep() {
+        return maxStep;
+    }
+
+    // Advances by deltaSeconds, in several equal sub-steps when it is longer than the maximum step.
     public void update(double deltaSeconds) {
-        if (algorithm == null) {
+        if (algorithmFactory == null) {
             return;
         }
+        if (deltaSeconds <= maxStep) {
+            step(deltaSeconds);
+            return;
+        }
+        long steps = (long) Math.ceil(deltaSeconds / maxStep);
+        double subStep = deltaSeconds / steps;
+        for (long i = 0; i < steps; i++) {
+            step(subStep);
+        }
+    }
 
+    private void step(double deltaSeconds) {
         simulationClock += deltaSeconds;
-        controller.update(deltaSeconds);
-        intersection.updateLights(deltaSeconds);
-        algorithm.update(deltaSeconds, controller, laneCars);
-
-        handleSpawning(deltaSeconds);
-        updateCars(deltaSeconds);
-        statsManager.update(deltaSeconds, simulationClock, laneCars.values());
+        tickTimer.begin(TickPhase.ARRIVALS);
+        releaseArrivals();
+        tickTimer.end();
+        tickTimer.begin(TickPhase.SIGNALS);
+        forEachNode(signalsStep, deltaSeconds);
+        tickTimer.end();
+        tickTimer.begin(TickPhase.CARS);
+        forEachNode(moveCarsStep, deltaSeconds);
+        tickTimer.end();
+        tickTimer.begin(TickPhase.HANDOVER);
+        deliverLeavingCars();
+        tickTimer.end();
+        tickTimer.begin(TickPhase.STATS);
+        statsManager.update(deltaSeconds, simulationClock, lanes);
+        tickTimer.end();
+        tickTimer.endLoop();
+        recordVehicleCounts();
     }
 
-    private void handleSpawning(double deltaSeconds) {
-        spawnTimer -= deltaSeconds;
-        if (spawnTimer > 0.0) {
+    private void recordVehicleCounts() {
+        if (!Recorder.isActive()) {
             return;
         }
+        int stopped = 0;
+        for (Direction direction : DIRECTIONS) {
+            stopped += statsManager.getStoppedCars(direction);
+        }
+        Recorder.vehicleCounts(simulationClock, spawnedCars - completedCars, stopped, spawnedCars, completedCars);
+    }
+
+    // Event-driven stepping: when nothing can start, stop, leave, arrive or change signal for a while, the quiet
+    // ticks are covered by one long step; otherwise a single tick is run. One tick of margin is kept before the
+    // next event so it still happens on a regular tick. Returns the number of ticks covered, at most maxTicks.
+    public long advanceToNextEvent(double deltaSeconds, long maxTicks) {
+        long quietTicks = Math.min(maxTicks, quietTicksBeforeNextEvent(deltaSeconds));
+        if (quietTicks < 2) {
+            update(deltaSeconds);
+            return 1;
+        }
+        // Nothing happens within the jump, so it is taken as one step whatever its length.
+        step(quietTicks * deltaSeconds);
+        return quietTicks;
+    }
+
+    private long quietTicksBeforeNextEvent(double deltaSeconds) {
+        if (algorithmFactory == null) {
+            return 1;
+        }
+        if (carFollowing != null) {
+            // Speeds change on every tick, so there is nothing to skip.
+            return 0;
+        }
+        double horizon = arrivals.peekTime() - simulationClock;
+        for (NetworkNode node : nodes) {
+            horizon = Math.min(horizon, node.timeToNextSignalEvent());
+        }
+        // Signals and arrivals are cheap to check; the car scan is skipped when they already rule out a jump.
+        if (horizon < 3 * deltaSeconds) {
+            return 0;
+        }
+        for (NetworkNode node : nodes) {
+            TrafficController controller = node.getController();
+            for (Direction direction : DIRECTIONS) {
+                double laneHorizon = node.getLane(direction)
+                        .timeToNextEvent(deltaSeconds, controller.getState(direction), CAR_LENGTH + MIN_GAP);
+                horizon = Math.min(horizon, laneHorizon);
+                if (horizon < 3 * deltaSeconds) {
+                    return 0;
+                }
+            }
+        }
+        return horizon == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) Math.floor(horizon / deltaSeconds) - 1;
+    }
 
-        Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
-        int waveSize = random.nextInt(WAVE_SIZE_MAX - WAVE_SIZE_MIN + 1) + WAVE_SIZE_MIN;
-        spawnWave(direction, waveSize);
-        spawnTimer = randomInterval();
+    // Takes a consistent copy of the whole state between ticks. The cost on this thread is proportional to the
+    // number of intersections; car data is shared copy-on-write and serialized later by EngineSnapshot.writeTo.
+    public EngineSnapshot captureSnapshot() throws IOException {
+        byte[] engineState = writeEngineState();
+        Lane.FrozenColumns[] frozen = new Lane.FrozenColumns[lanes.size()];
+        for (int i = 0; i < frozen.length; i++) {
+            frozen[i] = lanes.get(i).freeze();
+        }
+        return new EngineSnapshot(simulationClock, engineState, frozen);
     }
 
-    private void spawnWave(Direction direction, int count) {
-        List<Car> cars = laneCars.get(direction);
+    // Takes and releases one snapshot; run it before the first real capture, which would otherwise spend
+    // milliseconds on the simulation thread loading and linking the snapshot code.
+    public void prepareSnapshots() throws IOException {
+        captureSnapshot().release();
+    }
 
-        double[] basePosition = baseSpawnPosition(direction, cars);
-        double baseX = basePosition[0];
-        double baseY = basePosition[1];
+    private byte[] writeEngineState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(seed);
+        out.writeDouble(simulationClock);
+        out.writeLong(spawnedCars);
+        out.writeLong(completedCars);
+        out.writeUTF(getAlgorithmName());
+        out.writeBoolean(carFollowing != null);
+        out.writeInt(nodes.size());
+        for (NetworkNode node : nodes) {
+            node.getController().writeState(out);
+            node.getIntersection().writeState(out);
+            node.getAlgorithm().writeState(out);
+        }
+        arrivals.writeState(out);
+        statsManager.writeState(out);
+        performanceTracker.writeState(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
 
-        double offset = 0.0;
-        for (int i = 0; i < count; i++) {
-            if (i > 0) {
-                offset += randomWaveSpacing();
-            }
-            double x = baseX - direction.dx() * offset;
-            double y = baseY - direction.dy() * offset;
-            Color color = palette[random.nextInt(palette.length)];
-            Car car = new Car(direction, x, y, CAR_SPEED, CAR_LENGTH, color);
-            cars.add(car);
+    // Restores a snapshot taken from an engine with the same network, algorithm and arrival model. If this throws,
+    // the engine is left half restored and should be reset.
+    public void restoreSnapshot(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source, 1 << 16));
+        if (in.readInt() != EngineSnapshot.MAGIC) {
+            throw new IOException("Not an engine snapshot");
         }
+        int version = in.readInt();
+        if (version != EngineSnapshot.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        in.readInt(); // length of the engine state block, only needed by tools that skip it
+        long snapshotSeed = in.readLong();
+        double clock = in.readDouble();
+        long spawned = in.readLong();
+        long completed = in.readLong();
+        String algorithm = in.readUTF();
+        if (!algorithm.equals(getAlgorithmName())) {
+            throw new IOException("Snapshot was taken with " + algorithm + ", engine runs " + getAlgorithmName());
+        }
+        if (in.readBoolean() != (carFollowing != null)) {
+            throw new IOException("Snapshot and engine use different car-following models");
+        }
+        int nodeCount = in.readInt();
+        if (nodeCount != nodes.size()) {
+            throw new IOException("Snapshot has " + nodeCount + " intersections, this network has " + nodes.size());
+        }
+        for (NetworkNode node : nodes) {
+            node.getController().readState(in);
+            node.getIntersection().readState(in);
+            node.getAlgorithm().readState(in);
+        }
+        arrivals.readState(in);
+        statsManager.readState(in);
+        performanceTracker.readState(in);
+        int laneCount = in.readInt();
+        if (laneCount != lanes.size()) {
+            throw new IOException("Snapshot has " + laneCount + " lanes, this network has " + lanes.size());
+        }
+        for (Lane lane : lanes) {
+            lane.readState(in);
+        }
+        seed = snapshotSeed;
+        simulationClock = clock;
+        spawnedCars = spawned;
+        completedCars = completed;
     }
 
-    private double[] baseSpawnPosition(Direction direction, List<Car> existing) {
-        double x;
-        double y;
-        switch (direction) {
-            case EAST -> {
-                x = -SPAWN_OFFSET;
-                y = laneCoordinate.get(Direction.EAST);
-            }
-            case WEST -> {
-                x = width + SPAWN_OFFSET;
-                y = laneCoordinate.get(Direction.WEST);
-            }
-            case NORTH -> {
-                x = laneCoordinate.get(Direction.NORTH);
-                y = height + SPAWN_OFFSET;
+    private void forEachNode(NodeStep step, double deltaSeconds) {
+        if (pool == null || nodes.size() <= NODES_PER_TASK) {
+            for (int i = 0; i < nodes.size(); i++) {
+                step.apply(i, deltaSeconds);
             }
-            case SOUTH -> {
-                x = laneCoordinate.get(Direction.SOUTH);
-                y = -SPAWN_OFFSET;
-            }
-            default -> throw new IllegalStateException("Unexpected direction: " + direction);
+            return;
         }
+        pool.invoke(new NodeRangeTask(step, deltaSeconds, 0, nodes.size()));
+    }
 
-        if (!existing.isEmpty()) {
-            Car tail = existing.stream()
-                    .min((a, b) -> Double.compare(projectAlong(a), projectAlong(b)))
-                    .orElse(null);
-            if (tail != null) {
-                double spacing = randomWaveSpacing();
-                x = tail.getX() - direction.dx() * spacing;
-                y = tail.getY() - direction.dy() * spacing;
-            }
+    private void captureLeaders(int index) {
+        NetworkNode node = nodes.get(index);
+        for (Direction direction : DIRECTIONS) {
+            node.getLane(direction).captureLeader();
         }
+    }
 
-        return new double[]{x, y};
+    // Sequential phase: every arrival due by the end of the tick is released, however long the tick is.
+    private void releaseArrivals() {
+        while (arrivals.peekTime() <= simulationClock) {
+            int approach = arrivals.peekApproach();
+            Random random = arrivals.random(approach);
+            spawnWave(entryLanes[approach], arrivals.process(approach).vehiclesPerArrival(random), random,
+                    arrivals.classRandom(approach));
+            arrivals.advanceTop();
+        }
     }
 
-    private double randomWaveSpacing() {
-        double gap = WAVE_GAP_MIN + random.nextDouble() * (WAVE_GAP_MAX - WAVE_GAP_MIN);
-        return gap + CAR_LENGTH;
-    }
-
-    private void updateCars(double deltaSeconds) {
-        for (Direction direction : Direction.values()) {
-            List<Car> cars = laneCars.get(direction);
-            cars.sort((a, b) -> Double.compare(projectAlong(b), projectAlong(a)));
-            Car previous = null;
-            for (Car car : cars) {
-                boolean atSignal = !hasClearedStopLine(car);
-                TrafficLight.LightState lightState = controller.getState(direction);
-                boolean frontHasSpace = previous == null || gapToPrevious(car, previous) > (CAR_LENGTH + MIN_GAP);
-                boolean lightAllowsMovement = lightState == TrafficLight.LightState.GREEN
-                        || (lightState == TrafficLight.LightState.YELLOW && !atSignal);
-                boolean allowedToMove = frontHasSpace && (!atSignal || lightAllowsMovement);
-                car.update(deltaSeconds, allowedToMove);
-                previous = car;
-            }
+    // First pass of a tick: captures the leaders of the node's lanes and updates its signals. Signals only read
+    // lanes, their own and the ones those feed, and no car moves before the second pass, so the result is the same
+    // as stepping each node's signals and cars in one go.
+    private void updateSignals(int index, double deltaSeconds) {
+        captureLeaders(index);
+        nodes.get(index).updateSignals(deltaSeconds);
+    }
+
+    private void moveCars(int index, double deltaSeconds) {
+        moveCars(nodes.get(index), deltaSeconds);
+    }
+
+    private void moveCars(NetworkNode node, double deltaSeconds) {
+        TrafficController controller = node.getController();
+        for (Direction direction : DIRECTIONS) {
+            node.getLane(direction).advance(deltaSeconds, controller.getState(direction), CAR_LENGTH + MIN_GAP);
         }
+    }
 
-        removeFinishedCars();
+    // Sequential phase: cars crossing into the next intersection are delivered, finished trips are recorded.
+    private void deliverLeavingCars() {
+        for (int i = 0; i < lanes.size(); i++) {
+            completedCars += lanes.get(i).flushLeaving(exitListener);
+        }
     }
 
-    private double projectAlong(Car car) {
-        Direction direction = car.getDirection();
-        if (direction.dx() != 0) {
-            return car.getX() * direction.dx();
+    // The lead car enters at the edge of the map, or right behind the queue when it already reaches past the edge.
+    // Under car following a vehicle enters at its maximum speed unless it is within a headway of the tail, in
+    // which case it matches the tail's speed.
+    private void spawnWave(Lane lane, int count, Random random, Random classRandom) {
+        for (int i = 0; i < count; i++) {
+            VehicleClass type = carFollowing == null ? VehicleClass.CAR : randomVehicleClass(classRandom);
+            double position;
+            double spacing = 0.0;
+            if (lane.isEmpty()) {
+                position = entryPosition(lane.getDirection());
+            } else {
+                spacing = (lane.length(lane.size() - 1) + type.getLength()) / 2.0;
+                if (i == 0) {
+                    position = Math.min(entryPosition(lane.getDirection()), lane.tailPosition() - spacing - MIN_GAP);
+                } else {
+                    position = lane.tailPosition() - randomWaveSpacing(random, spacing);
+                }
+            }
+            if (carFollowing == null) {
+                lane.addLast(position, random.nextInt(COLOR_VARIANTS));
+            } else {
+                double initialSpeed = type.getMaxSpeed();
+                if (!lane.isEmpty()
+                        && lane.tailPosition() - position - spacing < initialSpeed * carFollowing.getTimeHeadway()) {
+                    initialSpeed = Math.min(initialSpeed, lane.velocity(lane.size() - 1));
+                }
+                lane.addLast(position, random.nextInt(COLOR_VARIANTS), type, initialSpeed);
+            }
+            spawnedCars++;
         }
-        return car.getY() * direction.dy();
     }
 
-    private boolean hasClearedStopLine(Car car) {
-        double centerX = width / 2.0;
-        double centerY = height / 2.0;
-        return switch (car.getDirection()) {
-            case EAST -> car.getX() >= centerX - INTERSECTION_HALF_SIZE;
-            case WEST -> car.getX() <= centerX + INTERSECTION_HALF_SIZE;
-            case NORTH -> car.getY() <= centerY - INTERSECTION_HALF_SIZE;
-            case SOUTH -> car.getY() >= centerY + INTERSECTION_HALF_SIZE;
-        };
+    private double randomWaveSpacing(Random random, double spacing) {
+        double gap = WAVE_GAP_MIN + random.nextDouble() * (WAVE_GAP_MAX - WAVE_GAP_MIN);
+        return gap + spacing;
     }
 
-    private double gapToPrevious(Car car, Car previous) {
-        if (previous == null) {
-            return Double.MAX_VALUE;
+    private static VehicleClass randomVehicleClass(Random random) {
+        double draw = random.nextDouble();
+        if (draw < BUS_SHARE) {
+            return VehicleClass.BUS;
         }
-        return switch (car.getDirection()) {
-            case EAST -> previous.getX() - car.getX();
-            case WEST -> car.getX() - previous.getX();
-            case NORTH -> car.getY() - previous.getY();
-            case SOUTH -> previous.getY() - car.getY();
-        };
+        return draw < BUS_SHARE + TRUCK_SHARE ? VehicleClass.TRUCK : VehicleClass.CAR;
     }
 
-    private void removeFinishedCars() {
-        for (Direction direction : Direction.values()) {
-            List<Car> cars = laneCars.get(direction);
-            cars.removeIf(car -> {
-                boolean finished = switch (direction) {
-                    case EAST -> car.getX() > width + SPAWN_OFFSET;
-                    case WEST -> car.getX() < -SPAWN_OFFSET;
-                    case NORTH -> car.getY() < -SPAWN_OFFSET;
-                    case SOUTH -> car.getY() > height + SPAWN_OFFSET;
-                };
-                return finished;
-            });
+    void updateCars(double deltaSeconds) {
+        for (int i = 0; i < nodes.size(); i++) {
+            captureLeaders(i);
+        }
+        for (NetworkNode node : nodes) {
+            moveCars(node, deltaSeconds);
+        }
+        deliverLeavingCars();
+    }
+
+    void populateLane(Direction direction, int count) {
+        Lane lane = primaryNode.getLane(direction);
+        double position = lane.isEmpty() ? entryPosition(direction) : lane.tailPosition() - CAR_LENGTH - WAVE_GAP_MIN;
+        for (int i = 0; i < count; i++) {
+            lane.addLast(position, i % COLOR_VARIANTS);
+            position -= CAR_LENGTH + WAVE_GAP_MIN;
+            spawnedCars++;
         }
     }
 
     public List<Car> getAllCars() {
         List<Car> all = new ArrayList<>();
-        laneCars.values().forEach(all::addAll);
+        lanes.forEach(all::addAll);
         return all;
     }
 
-    public Map<Direction, List<Car>> getLaneCars() {
-        return laneCars;
+    public Map<Direction, Lane> getLaneCars() {
+        return primaryNode.getLanes();
+    }
+
+    public List<Lane> getLanes() {
+        return lanes;
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    public String getAlgorithmName() {
+        SignalAlgorithm algorithm = primaryNode.getAlgorithm();
+        return algorithm == null ? "" : algorithm.name();
     }
 
     public Intersection getIntersection() {
-        return intersection;
+        return primaryNode.getIntersection();
     }
 
     public double getTotalWait() {
@@ -269,12 +628,35 @@ public class SimulationEngine {
         return simulationClock;
     }
 
+    public long getSpawnedCars() {
+        return spawnedCars;
+    }
+
+    public long getCompletedCars() {
+        return completedCars;
+    }
+
+    // Current counters for a reader on another thread; ticks is the caller's count, as a step may cover several.
+    public MetricsSnapshot captureMetrics(long ticks) {
+        int[] vehicles = new int[DIRECTIONS.length];
+        for (Lane lane : lanes) {
+            vehicles[lane.getDirection().ordinal()] += lane.size();
+        }
+        return new MetricsSnapshot(System.nanoTime(), ticks, simulationClock, vehicles,
+                statsManager.getLatestTotalWait(), spawnedCars, completedCars);
+    }
+
     public double getIntersectionHalfSize() {
         return INTERSECTION_HALF_SIZE;
     }
 
     public double getLaneOffset(Direction direction) {
-        return laneCoordinate.get(direction);
+        return primaryNode.getLane(direction).getCrossCoordinate();
+    }
+
+    // Lane position where cars enter the network travelling in the given direction.
+    public double getEntryPosition(Direction direction) {
+        return entryPosition(direction);
     }
 
     public double getCarLength() {
@@ -286,10 +668,46 @@ public class SimulationEngine {
     }
 
     public TrafficController getController() {
-        return controller;
+        return primaryNode.getController();
     }
 
     public TrafficStatsManager getStatsManager() {
         return statsManager;
     }
+
+    public PerformanceTracker getPerformanceTracker() {
+        return performanceTracker;
+    }
+
+    private interface NodeStep {
+        void apply(int index, double deltaSeconds);
+    }
+
+    private static final class NodeRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient NodeStep step;
+        private final double deltaSeconds;
+        private final int from;
+        private final int to;
+
+        NodeRangeTask(NodeStep step, double deltaSeconds, int from, int to) {
+            this.step = step;
+            this.deltaSeconds = deltaSeconds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= NODES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    step.apply(i, deltaSeconds);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new NodeRangeTask(step, deltaSeconds, from, middle), new NodeRangeTask(step, deltaSeconds, middle, to));
+        }
+    }
 }
@@ -2,7 +2,7 @@ package traffic.sim;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -10,6 +10,7 @@ import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
@@ -20,28 +21,72 @@ import traffic.sim.algorithms.FixedTimeController;
 import traffic.sim.algorithms.GreenWaveController;
 import traffic.sim.algorithms.MaxPressureController;
 import traffic.sim.algorithms.SignalAlgorithm;
-import traffic.sim.stats.TrafficStatsManager;
+import traffic.sim.diagnostics.PhaseTimer;
+import traffic.sim.model.IntelligentDriverModel;
+import traffic.sim.network.RoadNetwork;
+import traffic.sim.runtime.SimulationRunner;
+import traffic.sim.stats.TimeSeriesStore;
+import traffic.sim.stats.SampleQueue;
 import traffic.sim.ui.SimulationCanvas;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.function.Supplier;
 
 public class TrafficSimulationApp extends Application {
+    // Parts of a UI pulse, timed into JFR next to the engine's tick phases.
+    private enum FramePhase {
+        RENDER,
+        CHART,
+        LABELS
+    }
+
     private static final double CANVAS_WIDTH = 900;
     private static final double CANVAS_HEIGHT = 600;
+    private static final double SIMULATION_STEP = 1.0 / 60.0;
+    private static final double DEFAULT_GRID_SPACING = 400.0;
+    private static final int CHART_POINTS = 240;
+    private static final int HISTORY_BUCKETS = 3600;
+    private static final String[] CHART_RANGE_NAMES = {"4 min", "40 min", "4 h"};
+    private static final double[] CHART_RANGES = {240.0, 2400.0, 14400.0};
 
     private SimulationEngine engine;
+    private SimulationRunner runner;
     private SimulationCanvas canvas;
     private AnimationTimer timer;
-    private long lastTimestamp = -1L;
     private boolean running = false;
     private Supplier<SignalAlgorithm> algorithmFactory;
     private LineChart<Number, Number> waitChart;
     private XYChart.Series<Number, Number> waitSeries;
+    private XYChart.Series<Number, Number> peakSeries;
+    private final TimeSeriesStore waitHistory = new TimeSeriesStore(HISTORY_BUCKETS);
+    // The engine clears its sample queue when it resets; the chart follows at that point, not when the reset is
+    // requested, so samples from before the reset never land in the cleared history.
+    private final SampleQueue.SampleSink historySink = new SampleQueue.SampleSink() {
+        @Override
+        public void accept(double timeSeconds, double value) {
+            waitHistory.add(timeSeconds, value);
+        }
+
+        @Override
+        public void cleared() {
+            resetChart();
+        }
+    };
+    private double chartRange = CHART_RANGES[0];
+    private TimeSeriesStore.Tier chartTier;
+    private long chartVersion = -1L;
+    private Label achievedSpeedLabel;
+    private long achievedSpeedShown = -1L;
+    private final PhaseTimer<FramePhase> frameTimer = new PhaseTimer<>("frame", FramePhase.class);
 
     @Override
     public void start(Stage primaryStage) {
-        engine = new SimulationEngine(CANVAS_WIDTH, CANVAS_HEIGHT);
+        List<String> args = getParameters().getRaw();
+        engine = new SimulationEngine(buildNetwork(args));
+        engine.setCarFollowing(carFollowing(args));
         canvas = new SimulationCanvas(CANVAS_WIDTH, CANVAS_HEIGHT, engine);
+        runner = new SimulationRunner(engine, SIMULATION_STEP);
 
         BorderPane root = new BorderPane();
         root.setCenter(canvas);
@@ -52,8 +97,59 @@ public class TrafficSimulationApp extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        canvas.render();
+        runner.start();
         setupAnimationTimer();
+        timer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (timer != null) {
+            timer.stop();
+        }
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    // Accepts the same --grid COLUMNSxROWS, --spacing PIXELS and --car-following constant|idm options as
+    // HeadlessRunner; one intersection by default.
+    private static RoadNetwork buildNetwork(List<String> args) {
+        int columns = 1;
+        int rows = 1;
+        double spacing = DEFAULT_GRID_SPACING;
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (i + 1 >= args.size()) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            switch (arg) {
+                case "--grid" -> {
+                    String[] size = args.get(++i).toLowerCase(Locale.ROOT).split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("Grid must look like COLUMNSxROWS: " + args.get(i));
+                    }
+                    columns = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                case "--spacing" -> spacing = Double.parseDouble(args.get(++i));
+                case "--car-following" -> i++; // read by carFollowing()
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return RoadNetwork.grid(columns, rows, spacing, CANVAS_WIDTH / 2.0, CANVAS_HEIGHT / 2.0);
+    }
+
+    private static IntelligentDriverModel carFollowing(List<String> args) {
+        int option = args.indexOf("--car-following");
+        if (option < 0) {
+            return null;
+        }
+        return switch (args.get(option + 1).toLowerCase(Locale.ROOT)) {
+            case "constant" -> null;
+            case "idm" -> IntelligentDriverModel.standard();
+            default -> throw new IllegalArgumentException("Unknown car-following model: " + args.get(option + 1));
+        };
     }
 
     private VBox buildControls() {
@@ -86,12 +182,11 @@ public class TrafficSimulationApp extends Application {
                     selectAlgorithm(FixedTimeController::new);
                 }
                 running = true;
-                lastTimestamp = -1L;
-                timer.start();
+                runner.setPaused(false);
                 startStop.setText("Pause");
             } else {
                 running = false;
-                timer.stop();
+                runner.setPaused(true);
                 startStop.setText("Start");
             }
         });
@@ -100,7 +195,8 @@ public class TrafficSimulationApp extends Application {
         resetBtn.setMaxWidth(Double.MAX_VALUE);
         resetBtn.setOnAction(evt -> {
             running = false;
-            timer.stop();
+            runner.setPaused(true);
+            startStop.setText("Start");
             if (algorithmFactory == null) {
                 applyAlgorithm(FixedTimeController::new);
             } else {
@@ -108,23 +204,44 @@ public class TrafficSimulationApp extends Application {
             }
         });
 
-        Label info = new Label("Timer peste mașină = timpul de așteptare curent");
+        Label speedLabel = new Label("Viteză simulare");
+        ComboBox<Integer> speed = new ComboBox<>();
+        speed.getItems().addAll(1, 10, 100);
+        speed.setValue(1);
+        speed.setMaxWidth(Double.MAX_VALUE);
+        speed.setOnAction(evt -> runner.setSpeed(speed.getValue()));
+        achievedSpeedLabel = new Label();
+
+        Label info = new Label("Timer peste mașină = timpul de așteptare curent. Trage pentru deplasare, rotița pentru zoom, dublu-clic pentru întreaga rețea.");
         info.setWrapText(true);
 
         NumberAxis xAxis = new NumberAxis();
         xAxis.setLabel("Timp (s)");
-        xAxis.setForceZeroInRange(true);
+        xAxis.setForceZeroInRange(false);
         NumberAxis yAxis = new NumberAxis();
         yAxis.setLabel("Sumă totală timp așteptare (s)");
         waitChart = new LineChart<>(xAxis, yAxis);
         waitChart.setAnimated(false);
-        waitChart.setLegendVisible(false);
         waitChart.setCreateSymbols(false);
         waitChart.setPrefHeight(220);
         waitSeries = new XYChart.Series<>();
+        waitSeries.setName("Medie");
+        peakSeries = new XYChart.Series<>();
+        peakSeries.setName("Maxim pe interval");
         waitChart.getData().add(waitSeries);
+        waitChart.getData().add(peakSeries);
+
+        ComboBox<String> range = new ComboBox<>();
+        range.getItems().addAll(CHART_RANGE_NAMES);
+        range.setValue(CHART_RANGE_NAMES[0]);
+        range.setMaxWidth(Double.MAX_VALUE);
+        range.setOnAction(evt -> {
+            chartRange = CHART_RANGES[range.getSelectionModel().getSelectedIndex()];
+            chartTier = null;
+        });
 
-        box.getChildren().addAll(title, fixed, greenWave, maxPressure, startStop, resetBtn, info, waitChart);
+        box.getChildren().addAll(title, fixed, greenWave, maxPressure, startStop, resetBtn, speedLabel, speed, achievedSpeedLabel, info, range,
+                waitChart);
         selectAlgorithm(FixedTimeController::new);
         return box;
     }
@@ -135,50 +252,86 @@ public class TrafficSimulationApp extends Application {
 
     private void applyAlgorithm(Supplier<SignalAlgorithm> factory) {
         this.algorithmFactory = factory;
-        engine.setAlgorithm(factory.get());
-        engine.reset();
-        resetChart();
-        canvas.render();
+        runner.submit(simulation -> {
+            simulation.setAlgorithm(factory);
+            simulation.reset();
+        });
     }
 
     private void resetChart() {
+        waitHistory.clear();
+        chartTier = null;
         if (waitSeries != null) {
             waitSeries.getData().clear();
+            peakSeries.getData().clear();
         }
     }
 
+    // Samples go into the bounded history; the chart shows the tier whose buckets best fill the selected range
+    // and is only redrawn when that tier gains a bucket.
     private void updateChartSeries() {
         if (waitSeries == null) {
             return;
         }
-        var samples = engine.getStatsManager().drainSamples();
-        if (samples.isEmpty()) {
+        runner.drainSamples(historySink);
+        TimeSeriesStore.Tier tier = waitHistory.tierFor(chartRange, CHART_POINTS);
+        if (tier == chartTier && tier.getVersion() == chartVersion) {
             return;
         }
-        Platform.runLater(() -> {
-            for (TrafficStatsManager.StatsSample sample : samples) {
-                waitSeries.getData().add(new XYChart.Data<>(sample.timeSeconds(), sample.totalWaitSeconds()));
-            }
-            int maxPoints = 240;
-            if (waitSeries.getData().size() > maxPoints) {
-                waitSeries.getData().remove(0, waitSeries.getData().size() - maxPoints);
+        chartTier = tier;
+        chartVersion = tier.getVersion();
+        int end = tier.size();
+        int start = end == 0 ? 0 : Math.max(tier.firstAfter(tier.time(end - 1) - chartRange), end - CHART_POINTS);
+        fillSeries(waitSeries.getData(), tier, start, end, false);
+        fillSeries(peakSeries.getData(), tier, start, end, true);
+    }
+
+    // Rewrites the points in place so the series never shifts its backing list.
+    private static void fillSeries(ObservableList<XYChart.Data<Number, Number>> data, TimeSeriesStore.Tier tier,
+                                   int start, int end, boolean peak) {
+        int count = end - start;
+        if (data.size() > count) {
+            data.remove(count, data.size());
+        }
+        for (int i = 0; i < count; i++) {
+            double time = tier.time(start + i);
+            double value = peak ? tier.max(start + i) : tier.mean(start + i);
+            if (i < data.size()) {
+                XYChart.Data<Number, Number> point = data.get(i);
+                point.setXValue(time);
+                point.setYValue(value);
+            } else {
+                data.add(new XYChart.Data<>(time, value));
             }
-        });
+        }
+    }
+
+    // Shown only while the runner falls behind the selected speed; the text changes at most once a second.
+    private void updateAchievedSpeed() {
+        long shown = Math.round(runner.getAchievedSpeed());
+        if (shown == achievedSpeedShown) {
+            return;
+        }
+        achievedSpeedShown = shown;
+        boolean behind = shown > 0 && shown < Math.round(runner.getSpeed() * 0.95);
+        achievedSpeedLabel.setText(behind ? "Viteză reală: " + shown + "x" : "");
     }
 
     private void setupAnimationTimer() {
         timer = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                if (lastTimestamp < 0) {
-                    lastTimestamp = now;
-                    return;
-                }
-                double deltaSeconds = (now - lastTimestamp) / 1_000_000_000.0;
-                lastTimestamp = now;
-                engine.update(deltaSeconds);
-                canvas.render();
+                // The engine runs on the runner's thread; each pulse only draws the newest published frame.
+                frameTimer.begin(FramePhase.RENDER);
+                canvas.render(runner.getFrames().readFrame());
+                frameTimer.end();
+                frameTimer.begin(FramePhase.CHART);
                 updateChartSeries();
+                frameTimer.end();
+                frameTimer.begin(FramePhase.LABELS);
+                updateAchievedSpeed();
+                frameTimer.end();
+                frameTimer.endLoop();
             }
         };
     }
@@ -0,0 +1,36 @@
+package traffic.sim.algorithms;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+public enum AlgorithmType {
+    FIXED_TIME("fixed", FixedTimeController::new),
+    GREEN_WAVE("greenwave", GreenWaveController::new),
+    MAX_PRESSURE("maxpressure", MaxPressureController::new);
+
+    private final String key;
+    private final Supplier<SignalAlgorithm> factory;
+
+    AlgorithmType(String key, Supplier<SignalAlgorithm> factory) {
+        this.key = key;
+        this.factory = factory;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public SignalAlgorithm create() {
+        return factory.get();
+    }
+
+    public static AlgorithmType fromKey(String value) {
+        String normalized = value.toLowerCase(Locale.ROOT).replace("-", "").replace("_", "");
+        for (AlgorithmType type : values()) {
+            if (type.key.equals(normalized)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown algorithm: " + value);
+    }
+}
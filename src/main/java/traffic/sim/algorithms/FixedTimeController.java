@@ -1,10 +1,12 @@
 package traffic.sim.algorithms;
 
 import traffic.sim.controller.TrafficController;
-import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
 public class FixedTimeController implements SignalAlgorithm {
@@ -21,7 +23,7 @@ public class FixedTimeController implements SignalAlgorithm {
     }
 
     @Override
-    public void update(double deltaSeconds, TrafficController controller, Map<Direction, List<Car>> approachQueues) {
+    public void update(double deltaSeconds, TrafficController controller, Map<Direction, Lane> approachQueues) {
         timer += deltaSeconds;
 
         if (lastGroup == null) {
@@ -47,6 +49,17 @@ public class FixedTimeController implements SignalAlgorithm {
         }
     }
 
+    @Override
+    public double timeToNextDecision(TrafficController controller, Map<Direction, Lane> approachQueues) {
+        if (lastGroup != controller.getActiveGroup()) {
+            return 0.0;
+        }
+        if (controller.isTransitioning() || controller.getTargetGroup() != controller.getActiveGroup()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(0.0, phaseDuration - timer);
+    }
+
     @Override
     public String name() {
         return "Fixed Time";
@@ -57,4 +70,17 @@ public class FixedTimeController implements SignalAlgorithm {
         timer = 0.0;
         lastGroup = controller.getActiveGroup();
     }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(timer);
+        out.writeByte(lastGroup == null ? -1 : lastGroup.ordinal());
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        timer = in.readDouble();
+        byte group = in.readByte();
+        lastGroup = group < 0 ? null : TrafficController.DirectionGroup.values()[group];
+    }
 }
@@ -1,13 +1,13 @@
 package traffic.sim.algorithms;
 
 import traffic.sim.controller.TrafficController;
-import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 
-import java.util.EnumSet;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
-import java.util.Set;
 
 public class GreenWaveController implements SignalAlgorithm {
     private static final double BASE_GREEN_DURATION = 8.0;
@@ -21,7 +21,7 @@ public class GreenWaveController implements SignalAlgorithm {
     }
 
     @Override
-    public void update(double deltaSeconds, TrafficController controller, Map<Direction, List<Car>> approachQueues) {
+    public void update(double deltaSeconds, TrafficController controller, Map<Direction, Lane> approachQueues) {
         timer += deltaSeconds;
 
         TrafficController.DirectionGroup active = controller.getActiveGroup();
@@ -43,11 +43,11 @@ public class GreenWaveController implements SignalAlgorithm {
         }
     }
 
-    private double durationForGroup(Map<Direction, List<Car>> queues, TrafficController.DirectionGroup group) {
-        Set<Direction> dirs = group == TrafficController.DirectionGroup.EAST_WEST
-                ? EnumSet.of(Direction.EAST, Direction.WEST)
-                : EnumSet.of(Direction.NORTH, Direction.SOUTH);
-        int queued = dirs.stream().mapToInt(dir -> queueSize(queues, dir)).sum();
+    // Cars queued or arriving in the detector zones decide how long the group keeps its green.
+    private double durationForGroup(Map<Direction, Lane> queues, TrafficController.DirectionGroup group) {
+        int queued = group == TrafficController.DirectionGroup.EAST_WEST
+                ? zoneCount(queues, Direction.EAST) + zoneCount(queues, Direction.WEST)
+                : zoneCount(queues, Direction.NORTH) + zoneCount(queues, Direction.SOUTH);
         if (queued >= 3) {
             return BASE_GREEN_DURATION + EXTENSION;
         }
@@ -57,8 +57,21 @@ public class GreenWaveController implements SignalAlgorithm {
         return BASE_GREEN_DURATION;
     }
 
-    private int queueSize(Map<Direction, List<Car>> queues, Direction direction) {
-        return queues.getOrDefault(direction, List.of()).size();
+    private int zoneCount(Map<Direction, Lane> queues, Direction direction) {
+        Lane lane = queues.get(direction);
+        return lane == null ? 0 : lane.getDetector().getZoneCount();
+    }
+
+    @Override
+    public double timeToNextDecision(TrafficController controller, Map<Direction, Lane> approachQueues) {
+        TrafficController.DirectionGroup active = controller.getActiveGroup();
+        if (lastGroup != active) {
+            return 0.0;
+        }
+        if (controller.isTransitioning() || controller.getTargetGroup() != active) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(0.0, durationForGroup(approachQueues, active) - timer);
     }
 
     @Override
@@ -71,4 +84,17 @@ public class GreenWaveController implements SignalAlgorithm {
         timer = 0.0;
         lastGroup = controller.getActiveGroup();
     }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(timer);
+        out.writeByte(lastGroup == null ? -1 : lastGroup.ordinal());
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        timer = in.readDouble();
+        byte group = in.readByte();
+        lastGroup = group < 0 ? null : TrafficController.DirectionGroup.values()[group];
+    }
 }
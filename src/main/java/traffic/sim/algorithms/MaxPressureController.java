@@ -1,15 +1,19 @@
 package traffic.sim.algorithms;
 
 import traffic.sim.controller.TrafficController;
-import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
 public class MaxPressureController implements SignalAlgorithm {
-    private static final double MIN_HOLD = 3.0;
-    private static final double MAX_HOLD = 12.0;
+    // Long enough for a queue that has just been given green to get moving: under the IDM a shorter hold hands the
+    // green back before the first cars have accelerated away.
+    private static final double MIN_HOLD = 10.0;
+    private static final double MAX_HOLD = 20.0;
     private static final int SWITCH_THRESHOLD = 2;
 
     private double timer;
@@ -19,7 +23,7 @@ public class MaxPressureController implements SignalAlgorithm {
     }
 
     @Override
-    public void update(double deltaSeconds, TrafficController controller, Map<Direction, List<Car>> approachQueues) {
+    public void update(double deltaSeconds, TrafficController controller, Map<Direction, Lane> approachQueues) {
         timer += deltaSeconds;
 
         TrafficController.DirectionGroup active = controller.getActiveGroup();
@@ -57,8 +61,38 @@ public class MaxPressureController implements SignalAlgorithm {
         }
     }
 
-    private int pressureForPair(Map<Direction, List<Car>> queues, Direction dirA, Direction dirB) {
-        return queues.getOrDefault(dirA, List.of()).size() + queues.getOrDefault(dirB, List.of()).size();
+    @Override
+    public double timeToNextDecision(TrafficController controller, Map<Direction, Lane> approachQueues) {
+        TrafficController.DirectionGroup active = controller.getActiveGroup();
+        if (lastGroup != active) {
+            return 0.0;
+        }
+        if (controller.isTransitioning() || controller.getTargetGroup() != active) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int ewPressure = pressureForPair(approachQueues, Direction.EAST, Direction.WEST);
+        int nsPressure = pressureForPair(approachQueues, Direction.NORTH, Direction.SOUTH);
+        int opposingLead = active == TrafficController.DirectionGroup.EAST_WEST
+                ? nsPressure - ewPressure
+                : ewPressure - nsPressure;
+        double hold = opposingLead >= SWITCH_THRESHOLD ? MIN_HOLD : MAX_HOLD;
+        return Math.max(0.0, hold - timer);
+    }
+
+    private int pressureForPair(Map<Direction, Lane> queues, Direction dirA, Direction dirB) {
+        return movementPressure(queues, dirA) + movementPressure(queues, dirB);
+    }
+
+    // Every car still before the stop line presses for green, however far back the queue reaches, less the cars
+    // already waiting on the road it feeds: green on a movement whose exit is backed up moves nobody.
+    private int movementPressure(Map<Direction, Lane> queues, Direction direction) {
+        Lane lane = queues.get(direction);
+        if (lane == null) {
+            return 0;
+        }
+        Lane downstream = lane.getDownstream();
+        int blocked = downstream == null ? 0 : downstream.getDetector().getApproachCount();
+        return lane.getDetector().getApproachCount() - blocked;
     }
 
     @Override
@@ -71,4 +105,17 @@ public class MaxPressureController implements SignalAlgorithm {
         timer = 0.0;
         lastGroup = controller.getActiveGroup();
     }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(timer);
+        out.writeByte(lastGroup == null ? -1 : lastGroup.ordinal());
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        timer = in.readDouble();
+        byte group = in.readByte();
+        lastGroup = group < 0 ? null : TrafficController.DirectionGroup.values()[group];
+    }
 }
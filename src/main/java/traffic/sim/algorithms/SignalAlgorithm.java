@@ -1,18 +1,32 @@
 package traffic.sim.algorithms;
 
 import traffic.sim.controller.TrafficController;
-import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
 public interface SignalAlgorithm {
-    void update(double deltaSeconds, TrafficController controller, Map<Direction, List<Car>> approachQueues);
+    void update(double deltaSeconds, TrafficController controller, Map<Direction, Lane> approachQueues);
 
     String name();
 
+    // Seconds until the algorithm may act again if queue sizes stay as they are; 0 means it must run every tick.
+    default double timeToNextDecision(TrafficController controller, Map<Direction, Lane> approachQueues) {
+        return 0.0;
+    }
+
     default void reset(TrafficController controller) {
         // Optional to override when algorithm keeps additional state
     }
+
+    // Algorithms with internal timers or memory write them here so snapshots restore them exactly.
+    default void writeState(DataOutput out) throws IOException {
+    }
+
+    default void readState(DataInput in) throws IOException {
+    }
 }
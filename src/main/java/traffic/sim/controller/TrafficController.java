@@ -1,9 +1,13 @@
 package traffic.sim.controller;
 
+import traffic.sim.diagnostics.Recorder;
 import traffic.sim.model.Direction;
 import traffic.sim.model.Intersection;
 import traffic.sim.model.TrafficLight;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -36,6 +40,8 @@ public class TrafficController {
     private static final double YELLOW_DURATION = 2.0;
 
     private final Intersection intersection;
+    // Identifies the intersection in diagnostics only.
+    private final int intersectionId;
     private DirectionGroup activeGroup;
     private DirectionGroup targetGroup;
     private PhaseState phaseState;
@@ -43,7 +49,12 @@ public class TrafficController {
     private double minGreenForCurrentPhase;
 
     public TrafficController(Intersection intersection) {
+        this(intersection, 0);
+    }
+
+    public TrafficController(Intersection intersection, int intersectionId) {
         this.intersection = intersection;
+        this.intersectionId = intersectionId;
         reset(DirectionGroup.EAST_WEST);
     }
 
@@ -85,6 +96,16 @@ public class TrafficController {
         }
     }
 
+    // Seconds until the controller changes a light by itself, assuming no new switch request arrives meanwhile.
+    public double timeToNextTransition() {
+        return switch (phaseState) {
+            case GREEN -> targetGroup == activeGroup
+                    ? Double.POSITIVE_INFINITY
+                    : Math.max(0.0, minGreenForCurrentPhase - stateTimer);
+            case YELLOW -> Math.max(0.0, YELLOW_DURATION - stateTimer);
+        };
+    }
+
     private boolean shouldBeginYellowPhase() {
         if (targetGroup == activeGroup) {
             return false;
@@ -99,6 +120,7 @@ public class TrafficController {
     }
 
     private void completeTransition() {
+        Recorder.signalPhaseChanged(intersectionId, targetGroup.name(), activeGroup.name());
         applyGroupState(activeGroup, TrafficLight.LightState.RED);
         activeGroup = targetGroup;
         phaseState = PhaseState.GREEN;
@@ -108,6 +130,23 @@ public class TrafficController {
         applyGroupState(activeGroup.opposite(), TrafficLight.LightState.RED);
     }
 
+    // Light states are written by the intersection itself.
+    public void writeState(DataOutput out) throws IOException {
+        out.writeByte(activeGroup.ordinal());
+        out.writeByte(targetGroup.ordinal());
+        out.writeByte(phaseState.ordinal());
+        out.writeDouble(stateTimer);
+        out.writeDouble(minGreenForCurrentPhase);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        activeGroup = DirectionGroup.values()[in.readUnsignedByte()];
+        targetGroup = DirectionGroup.values()[in.readUnsignedByte()];
+        phaseState = PhaseState.values()[in.readUnsignedByte()];
+        stateTimer = in.readDouble();
+        minGreenForCurrentPhase = in.readDouble();
+    }
+
     private void applyGroupState(DirectionGroup group, TrafficLight.LightState state) {
         for (Direction direction : group.directions()) {
             intersection.getLight(direction).setState(state);
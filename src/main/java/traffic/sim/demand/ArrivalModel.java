@@ -0,0 +1,10 @@
+package traffic.sim.demand;
+
+import traffic.sim.model.Direction;
+import traffic.sim.network.NetworkNode;
+
+@FunctionalInterface
+public interface ArrivalModel {
+    // Creates the arrival process feeding the entry lane of the given intersection and direction of travel.
+    ArrivalProcess create(NetworkNode node, Direction direction);
+}
@@ -0,0 +1,25 @@
+package traffic.sim.demand;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+public interface ArrivalProcess {
+    // Absolute simulation time of the next arrival at or after the given time, or +infinity when none follow.
+    double nextArrivalTime(double afterSeconds, Random random);
+
+    default int vehiclesPerArrival(Random random) {
+        return 1;
+    }
+
+    default void reset() {
+        // Optional to override when the process keeps a cursor or other state
+    }
+
+    default void writeState(DataOutput out) throws IOException {
+    }
+
+    default void readState(DataInput in) throws IOException {
+    }
+}
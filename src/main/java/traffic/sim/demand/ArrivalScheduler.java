@@ -0,0 +1,122 @@
+package traffic.sim.demand;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+// Binary min-heap of approaches keyed by their next arrival time. Ties go to the lower approach index,
+// so the order arrivals are released in depends only on the seeds.
+public class ArrivalScheduler {
+    private final ArrivalProcess[] processes;
+    private final StatefulRandom[] randoms;
+    private final StatefulRandom[] classRandoms;
+    private final double[] nextTimes;
+    private final int[] heap;
+
+    public ArrivalScheduler(ArrivalProcess[] processes) {
+        this.processes = processes.clone();
+        this.randoms = new StatefulRandom[processes.length];
+        this.classRandoms = new StatefulRandom[processes.length];
+        this.nextTimes = new double[processes.length];
+        this.heap = new int[processes.length];
+    }
+
+    public void reset(double startTime, long[] seeds, long[] classSeeds) {
+        if (seeds.length != processes.length || classSeeds.length != processes.length) {
+            throw new IllegalArgumentException("Expected " + processes.length + " seeds, got " + seeds.length
+                    + " and " + classSeeds.length);
+        }
+        for (int a = 0; a < processes.length; a++) {
+            randoms[a] = new StatefulRandom(seeds[a]);
+            classRandoms[a] = new StatefulRandom(classSeeds[a]);
+            processes[a].reset();
+            nextTimes[a] = processes[a].nextArrivalTime(startTime, randoms[a]);
+            heap[a] = a;
+        }
+        for (int i = (heap.length >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    public int size() {
+        return processes.length;
+    }
+
+    public double peekTime() {
+        return heap.length == 0 ? Double.POSITIVE_INFINITY : nextTimes[heap[0]];
+    }
+
+    public int peekApproach() {
+        return heap[0];
+    }
+
+    public ArrivalProcess process(int approach) {
+        return processes[approach];
+    }
+
+    public Random random(int approach) {
+        return randoms[approach];
+    }
+
+    // Kept apart from the arrival stream: only some car-following models draw vehicle classes, and those draws
+    // must not shift the arrivals that follow.
+    public Random classRandom(int approach) {
+        return classRandoms[approach];
+    }
+
+    // Schedules the next arrival of the approach at the top of the heap, after the one just released.
+    public void advanceTop() {
+        int approach = heap[0];
+        nextTimes[approach] = processes[approach].nextArrivalTime(nextTimes[approach], randoms[approach]);
+        siftDown(0);
+    }
+
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(processes.length);
+        for (int a = 0; a < processes.length; a++) {
+            out.writeDouble(nextTimes[a]);
+            out.writeInt(heap[a]);
+            out.writeLong(randoms[a].getState());
+            out.writeLong(classRandoms[a].getState());
+            processes[a].writeState(out);
+        }
+    }
+
+    public void readState(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count != processes.length) {
+            throw new IOException("Snapshot has " + count + " arrival approaches, this network has " + processes.length);
+        }
+        for (int a = 0; a < count; a++) {
+            nextTimes[a] = in.readDouble();
+            heap[a] = in.readInt();
+            randoms[a].setState(in.readLong());
+            classRandoms[a].setState(in.readLong());
+            processes[a].readState(in);
+        }
+    }
+
+    private void siftDown(int index) {
+        int approach = heap[index];
+        int half = heap.length >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < heap.length && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], approach)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = approach;
+    }
+
+    private boolean before(int a, int b) {
+        int order = Double.compare(nextTimes[a], nextTimes[b]);
+        return order < 0 || (order == 0 && a < b);
+    }
+}
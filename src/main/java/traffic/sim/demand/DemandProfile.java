@@ -0,0 +1,50 @@
+package traffic.sim.demand;
+
+import java.util.Arrays;
+
+// Hour-by-hour demand multipliers over a day; simulation time 0 is midnight.
+public class DemandProfile {
+    private static final double SECONDS_PER_HOUR = 3600.0;
+    private static final int HOURS_PER_DAY = 24;
+
+    private final double[] hourlyFactors;
+    private final double maxFactor;
+
+    public DemandProfile(double[] hourlyFactors) {
+        if (hourlyFactors.length != HOURS_PER_DAY) {
+            throw new IllegalArgumentException("Expected 24 hourly factors, got " + hourlyFactors.length);
+        }
+        double max = 0.0;
+        for (double factor : hourlyFactors) {
+            if (factor < 0.0) {
+                throw new IllegalArgumentException("Demand factors must not be negative: " + factor);
+            }
+            max = Math.max(max, factor);
+        }
+        this.hourlyFactors = hourlyFactors.clone();
+        this.maxFactor = max;
+    }
+
+    public static DemandProfile flat() {
+        double[] factors = new double[HOURS_PER_DAY];
+        Arrays.fill(factors, 1.0);
+        return new DemandProfile(factors);
+    }
+
+    public static DemandProfile rushHour() {
+        return new DemandProfile(new double[]{
+                0.15, 0.10, 0.08, 0.08, 0.15, 0.40, 1.00, 1.90,
+                2.20, 1.60, 1.10, 1.10, 1.20, 1.15, 1.10, 1.30,
+                1.80, 2.30, 2.00, 1.40, 0.90, 0.60, 0.40, 0.25
+        });
+    }
+
+    public double factorAt(double simulationSeconds) {
+        int hour = (int) Math.floor(simulationSeconds / SECONDS_PER_HOUR) % HOURS_PER_DAY;
+        return hourlyFactors[hour < 0 ? hour + HOURS_PER_DAY : hour];
+    }
+
+    public double maxFactor() {
+        return maxFactor;
+    }
+}
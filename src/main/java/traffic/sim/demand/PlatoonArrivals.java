@@ -0,0 +1,34 @@
+package traffic.sim.demand;
+
+import java.util.Random;
+
+// Platoons of minSize..maxSize vehicles separated by uniformly distributed headways.
+public class PlatoonArrivals implements ArrivalProcess {
+    private final double minInterval;
+    private final double maxInterval;
+    private final int minSize;
+    private final int maxSize;
+
+    public PlatoonArrivals(double minIntervalSeconds, double maxIntervalSeconds, int minSize, int maxSize) {
+        if (minIntervalSeconds <= 0.0 || maxIntervalSeconds < minIntervalSeconds) {
+            throw new IllegalArgumentException("Invalid platoon interval: " + minIntervalSeconds + ".." + maxIntervalSeconds);
+        }
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid platoon size: " + minSize + ".." + maxSize);
+        }
+        this.minInterval = minIntervalSeconds;
+        this.maxInterval = maxIntervalSeconds;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public double nextArrivalTime(double afterSeconds, Random random) {
+        return afterSeconds + minInterval + random.nextDouble() * (maxInterval - minInterval);
+    }
+
+    @Override
+    public int vehiclesPerArrival(Random random) {
+        return random.nextInt(maxSize - minSize + 1) + minSize;
+    }
+}
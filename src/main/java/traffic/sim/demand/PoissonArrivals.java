@@ -0,0 +1,32 @@
+package traffic.sim.demand;
+
+import java.util.Random;
+
+// Single-vehicle Poisson arrivals whose rate follows a demand profile, sampled by thinning.
+public class PoissonArrivals implements ArrivalProcess {
+    private final double vehiclesPerHour;
+    private final DemandProfile profile;
+
+    public PoissonArrivals(double vehiclesPerHour, DemandProfile profile) {
+        if (vehiclesPerHour < 0.0) {
+            throw new IllegalArgumentException("Arrival rate must not be negative: " + vehiclesPerHour);
+        }
+        this.vehiclesPerHour = vehiclesPerHour;
+        this.profile = profile;
+    }
+
+    @Override
+    public double nextArrivalTime(double afterSeconds, Random random) {
+        double peakRate = vehiclesPerHour * profile.maxFactor() / 3600.0;
+        if (peakRate <= 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double time = afterSeconds;
+        while (true) {
+            time -= Math.log(1.0 - random.nextDouble()) / peakRate;
+            if (random.nextDouble() * profile.maxFactor() <= profile.factorAt(time)) {
+                return time;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package traffic.sim.demand;
+
+import java.util.Random;
+
+// Same sequence as java.util.Random for the same seed, but keeps the 48-bit generator state in a field of its own
+// so a checkpoint can save and restore it as a plain long. Random hides its state, and serializing it costs tens
+// of milliseconds the first time, which is more than a checkpoint may pause the simulation.
+final class StatefulRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // Not initialised here: Random's constructor sets it through setSeed before field initialisers would run.
+    private long state;
+
+    StatefulRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    // Random's polar method, but the second value of each pair is dropped instead of cached in private fields that
+    // the saved state would miss; the generator state stays the only thing a checkpoint has to keep.
+    @Override
+    public double nextGaussian() {
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,128 @@
+package traffic.sim.demand;
+
+import traffic.sim.model.Direction;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Replays recorded arrival times for one approach, in order.
+public class TraceArrivals implements ArrivalProcess {
+    private final double[] times;
+    private final int[] vehicles;
+    private int cursor;
+
+    public TraceArrivals(double[] times, int[] vehicles) {
+        if (times.length != vehicles.length) {
+            throw new IllegalArgumentException("Times and vehicle counts differ in length");
+        }
+        this.times = times;
+        this.vehicles = vehicles;
+    }
+
+    @Override
+    public double nextArrivalTime(double afterSeconds, Random random) {
+        while (cursor < times.length && times[cursor] < afterSeconds) {
+            cursor++;
+        }
+        return cursor < times.length ? times[cursor] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public int vehiclesPerArrival(Random random) {
+        return cursor < vehicles.length ? vehicles[cursor++] : 0;
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(cursor);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        cursor = in.readInt();
+    }
+
+    // Reads "timeSeconds,nodeId,DIRECTION[,vehicles]" lines; blank lines and lines starting with '#' are skipped.
+    // Approaches missing from the file get no arrivals.
+    public static ArrivalModel load(Path path) throws IOException {
+        Map<String, TraceBuilder> builders = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length < 3) {
+                    throw new IOException(path + ":" + lineNumber + ": expected time,node,direction[,vehicles]");
+                }
+                try {
+                    double time = Double.parseDouble(fields[0].trim());
+                    int node = Integer.parseInt(fields[1].trim());
+                    Direction direction = Direction.valueOf(fields[2].trim().toUpperCase(Locale.ROOT));
+                    int count = fields.length > 3 ? Integer.parseInt(fields[3].trim()) : 1;
+                    builders.computeIfAbsent(key(node, direction), k -> new TraceBuilder()).add(time, count);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return (node, direction) -> {
+            TraceBuilder builder = builders.get(key(node.getId(), direction));
+            return builder == null ? new TraceArrivals(new double[0], new int[0]) : builder.build();
+        };
+    }
+
+    private static String key(int node, Direction direction) {
+        return node + ":" + direction;
+    }
+
+    private static final class TraceBuilder {
+        private double[] times = new double[16];
+        private int[] vehicles = new int[16];
+        private int size;
+
+        void add(double time, int count) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                vehicles = Arrays.copyOf(vehicles, size * 2);
+            }
+            times[size] = time;
+            vehicles[size] = count;
+            size++;
+        }
+
+        TraceArrivals build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(times[a], times[b]));
+            double[] sortedTimes = new double[size];
+            int[] sortedVehicles = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedTimes[i] = times[order[i]];
+                sortedVehicles[i] = vehicles[order[i]];
+            }
+            return new TraceArrivals(sortedTimes, sortedVehicles);
+        }
+    }
+}
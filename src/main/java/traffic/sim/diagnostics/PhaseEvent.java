@@ -0,0 +1,24 @@
+package traffic.sim.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// One timed phase of a simulation tick or UI frame. Only phases over the threshold are recorded by default, which
+// is what is needed to find a stutter; lower it in the recording settings to see every phase.
+@Name("traffic.sim.Phase")
+@Label("Phase")
+@Category({"Traffic Simulator", "Timing"})
+@Description("A phase of a simulation tick or of a rendered frame")
+@Threshold("1 ms")
+@StackTrace(false)
+class PhaseEvent extends jdk.jfr.Event {
+    @Label("Loop")
+    String loop;
+
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,106 @@
+package traffic.sim.diagnostics;
+
+import traffic.sim.stats.LogLinearHistogram;
+
+import java.util.Locale;
+
+// Times the phases of a loop run by a single thread while a JFR recording has the phase events enabled. Every
+// phase goes into a histogram that is summarised once a second as PhaseTimingEvents, and becomes a PhaseEvent of
+// its own when it runs over that event's threshold. Without a recording begin and end return at once: a clock read
+// costs about as much as a small tick, so the timer only checks once per loop whether recording has started.
+public final class PhaseTimer<P extends Enum<P>> {
+    private static final long MAX_TRACKED_NANOS = 10_000_000_000L;
+    private static final long SUMMARY_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String loop;
+    private final P[] phases;
+    private final String[] phaseNames;
+    private final LogLinearHistogram[] window;
+    private final long[] windowMax;
+    private final long[] windowTotal;
+    private boolean enabled;
+    private long windowStart;
+    private P current;
+    private long phaseStart;
+    private PhaseEvent event;
+
+    public PhaseTimer(String loop, Class<P> phaseType) {
+        this.loop = loop;
+        this.phases = phaseType.getEnumConstants();
+        this.phaseNames = new String[phases.length];
+        this.window = new LogLinearHistogram[phases.length];
+        this.windowMax = new long[phases.length];
+        this.windowTotal = new long[phases.length];
+        for (P phase : phases) {
+            phaseNames[phase.ordinal()] = phase.name().toLowerCase(Locale.ROOT);
+            window[phase.ordinal()] = new LogLinearHistogram(MAX_TRACKED_NANOS);
+        }
+    }
+
+    public void begin(P phase) {
+        if (!enabled) {
+            return;
+        }
+        current = phase;
+        event = new PhaseEvent();
+        event.begin();
+        phaseStart = System.nanoTime();
+    }
+
+    public void end() {
+        if (!enabled) {
+            return;
+        }
+        long elapsed = System.nanoTime() - phaseStart;
+        int index = current.ordinal();
+        window[index].record(elapsed);
+        windowMax[index] = Math.max(windowMax[index], elapsed);
+        windowTotal[index] += elapsed;
+        event.end();
+        if (event.shouldCommit()) {
+            event.loop = loop;
+            event.phase = phaseNames[index];
+            event.commit();
+        }
+        event = null;
+    }
+
+    // Called by the owning thread after each pass of the loop; emits and restarts the summaries once a second.
+    public void endLoop() {
+        if (!enabled) {
+            enabled = isRecording();
+            windowStart = enabled ? System.nanoTime() : 0L;
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart < SUMMARY_INTERVAL_NANOS) {
+            return;
+        }
+        windowStart = now;
+        for (int i = 0; i < phases.length; i++) {
+            LogLinearHistogram histogram = window[i];
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            PhaseTimingEvent summary = new PhaseTimingEvent();
+            if (summary.isEnabled()) {
+                summary.loop = loop;
+                summary.phase = phaseNames[i];
+                summary.count = histogram.getTotalCount();
+                summary.median = histogram.valueAtPercentile(50.0);
+                summary.p99 = histogram.valueAtPercentile(99.0);
+                summary.max = windowMax[i];
+                summary.total = windowTotal[i];
+                summary.commit();
+            }
+            histogram.reset();
+            windowMax[i] = 0L;
+            windowTotal[i] = 0L;
+        }
+        enabled = isRecording();
+    }
+
+    private static boolean isRecording() {
+        return Recorder.isActive() && (new PhaseTimingEvent().isEnabled() || new PhaseEvent().isEnabled());
+    }
+}
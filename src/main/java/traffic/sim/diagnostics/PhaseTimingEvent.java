@@ -0,0 +1,40 @@
+package traffic.sim.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("traffic.sim.PhaseTiming")
+@Label("Phase Timing")
+@Category({"Traffic Simulator", "Timing"})
+@Description("Distribution of the durations of one phase over the last summary interval")
+@StackTrace(false)
+class PhaseTimingEvent extends jdk.jfr.Event {
+    @Label("Loop")
+    String loop;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Count")
+    long count;
+
+    @Label("Median")
+    @Timespan(Timespan.NANOSECONDS)
+    long median;
+
+    @Label("99th Percentile")
+    @Timespan(Timespan.NANOSECONDS)
+    long p99;
+
+    @Label("Maximum")
+    @Timespan(Timespan.NANOSECONDS)
+    long max;
+
+    @Label("Total")
+    @Timespan(Timespan.NANOSECONDS)
+    long total;
+}
@@ -0,0 +1,42 @@
+package traffic.sim.diagnostics;
+
+import jdk.jfr.FlightRecorder;
+
+// Entry point for the simulation's JFR events. Loading the first event class costs a few hundred milliseconds,
+// so the events are only touched once JFR is running, whether started on the command line or later with jcmd.
+public final class Recorder {
+    private Recorder() {
+    }
+
+    public static boolean isActive() {
+        return FlightRecorder.isInitialized();
+    }
+
+    public static void signalPhaseChanged(int intersection, String green, String previousGreen) {
+        if (!isActive()) {
+            return;
+        }
+        SignalPhaseEvent event = new SignalPhaseEvent();
+        if (event.isEnabled()) {
+            event.intersection = intersection;
+            event.green = green;
+            event.previousGreen = previousGreen;
+            event.commit();
+        }
+    }
+
+    public static void vehicleCounts(double simulationTime, long vehicles, int stopped, long spawned, long completed) {
+        if (!isActive()) {
+            return;
+        }
+        VehicleCountEvent event = new VehicleCountEvent();
+        if (event.isEnabled()) {
+            event.simulationTime = simulationTime;
+            event.vehicles = vehicles;
+            event.stopped = stopped;
+            event.spawned = spawned;
+            event.completed = completed;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package traffic.sim.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("traffic.sim.SignalPhaseChange")
+@Label("Signal Phase Change")
+@Category({"Traffic Simulator", "Signals"})
+@Description("An intersection finished its yellow and gave green to the other direction group")
+@StackTrace(false)
+final class SignalPhaseEvent extends jdk.jfr.Event {
+    @Label("Intersection")
+    int intersection;
+
+    @Label("Green")
+    String green;
+
+    @Label("Previous Green")
+    String previousGreen;
+}
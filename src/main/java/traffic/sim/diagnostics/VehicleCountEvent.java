@@ -0,0 +1,32 @@
+package traffic.sim.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("traffic.sim.VehicleCounts")
+@Label("Vehicle Counts")
+@Category({"Traffic Simulator", "Engine"})
+@Description("Vehicles in the network at the end of a tick")
+// One event per tick: off unless a recording asks for it.
+@Enabled(false)
+@StackTrace(false)
+final class VehicleCountEvent extends jdk.jfr.Event {
+    @Label("Simulation Seconds")
+    double simulationTime;
+
+    @Label("Vehicles")
+    long vehicles;
+
+    @Label("Stopped")
+    int stopped;
+
+    @Label("Spawned")
+    long spawned;
+
+    @Label("Completed")
+    long completed;
+}
@@ -0,0 +1,102 @@
+package traffic.sim.headless;
+
+import traffic.sim.EngineSnapshot;
+import traffic.sim.SimulationEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Writes engine snapshots on a background thread; only the capture runs on the simulation thread. Each snapshot
+// goes to a temporary file first, so a crash mid-write leaves the previous checkpoint intact. While the previous
+// write is still running a checkpoint is deferred rather than stalling the simulation thread behind the disk.
+public class Checkpointer implements Closeable {
+    private final Path path;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+    private int written;
+    private int deferred;
+    private long longestCaptureNanos;
+    private long lastCaptureNanos;
+
+    public Checkpointer(Path path) {
+        this.path = path;
+    }
+
+    // Returns false without capturing when the previous snapshot is still being written; call again later.
+    public boolean checkpoint(SimulationEngine engine) throws IOException {
+        if (pending != null && !pending.isDone()) {
+            deferred++;
+            return false;
+        }
+        long start = System.nanoTime();
+        awaitPending();
+        EngineSnapshot snapshot = engine.captureSnapshot();
+        lastCaptureNanos = System.nanoTime() - start;
+        longestCaptureNanos = Math.max(longestCaptureNanos, lastCaptureNanos);
+        pending = writer.submit(() -> {
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                snapshot.writeTo(out);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return null;
+        });
+        written++;
+        return true;
+    }
+
+    private void awaitPending() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing checkpoint", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Checkpoint failed: " + path, e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    // Steps on which a due checkpoint had to wait for the previous write.
+    public int getDeferred() {
+        return deferred;
+    }
+
+    // The first capture also pays for class loading, so the latest one is the better steady-state figure.
+    public double getLastCaptureMillis() {
+        return lastCaptureNanos / 1_000_000.0;
+    }
+
+    public double getLongestCaptureMillis() {
+        return longestCaptureNanos / 1_000_000.0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitPending();
+        } finally {
+            writer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package traffic.sim.headless;
+
+import traffic.sim.SimulationEngine;
+import traffic.sim.algorithms.AlgorithmType;
+import traffic.sim.demand.ArrivalModel;
+import traffic.sim.demand.DemandProfile;
+import traffic.sim.demand.PoissonArrivals;
+import traffic.sim.demand.TraceArrivals;
+import traffic.sim.metrics.MetricsServer;
+import traffic.sim.model.IntelligentDriverModel;
+import traffic.sim.network.RoadNetwork;
+import traffic.sim.stats.PerformanceTracker;
+import traffic.sim.stats.SampleQueue;
+import traffic.sim.trace.TraceRecorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class HeadlessRunner {
+    public static final double WORLD_WIDTH = 900;
+    public static final double WORLD_HEIGHT = 600;
+    public static final double DEFAULT_DELTA = 1.0 / 60.0;
+    public static final double DEFAULT_GRID_SPACING = 400.0;
+    public static final double DEFAULT_CHECKPOINT_INTERVAL = 600.0;
+
+    // The clock is read after every step: on a large grid a single step can outlast the interval.
+    private static final long METRICS_INTERVAL_NANOS = 250_000_000L;
+
+    private static final SampleQueue.SampleSink DISCARD_SAMPLES = (time, value) -> {
+    };
+
+    private final SimulationEngine engine;
+    private final double deltaSeconds;
+    private boolean eventDriven;
+    private TraceRecorder recorder;
+    private Checkpointer checkpointer;
+    private double checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private Path resumeFrom;
+    private MetricsServer metrics;
+
+    public HeadlessRunner(SimulationEngine engine, double deltaSeconds) {
+        if (deltaSeconds <= 0.0) {
+            throw new IllegalArgumentException("Delta must be positive: " + deltaSeconds);
+        }
+        this.engine = engine;
+        this.deltaSeconds = deltaSeconds;
+    }
+
+    // Jumps over quiet stretches instead of ticking through them; see SimulationEngine.advanceToNextEvent.
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    // Records a trace frame after every step; the caller closes the recorder.
+    public void setRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Saves a snapshot every intervalSeconds of simulated time; the caller closes the checkpointer.
+    public void setCheckpointer(Checkpointer checkpointer, double intervalSeconds) {
+        if (intervalSeconds <= 0.0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + intervalSeconds);
+        }
+        this.checkpointer = checkpointer;
+        this.checkpointInterval = intervalSeconds;
+    }
+
+    // Continues from a snapshot instead of starting empty; the run still ends at the requested duration.
+    public void setResumeFrom(Path snapshot) {
+        this.resumeFrom = snapshot;
+    }
+
+    // Publishes engine snapshots to the server while running; the caller closes the server.
+    public void setMetrics(MetricsServer metrics) {
+        this.metrics = metrics;
+    }
+
+    public RunResult run(AlgorithmType algorithmType, double durationSeconds) {
+        engine.setAlgorithm(algorithmType::create);
+        engine.reset();
+        if (resumeFrom != null) {
+            try (InputStream in = Files.newInputStream(resumeFrom)) {
+                engine.restoreSnapshot(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (checkpointer != null) {
+            prepareSnapshots();
+        }
+
+        long ticks = (long) Math.ceil(durationSeconds / deltaSeconds);
+        long steps = 0;
+        double nextCheckpoint = engine.getSimulationClock() + checkpointInterval;
+
+        long start = System.nanoTime();
+        long tick = Math.round(engine.getSimulationClock() / deltaSeconds);
+        long nextMetrics = start;
+        for (; tick < ticks; steps++) {
+            if (eventDriven) {
+                tick += engine.advanceToNextEvent(deltaSeconds, ticks - tick);
+            } else {
+                engine.update(deltaSeconds);
+                tick++;
+            }
+            if (recorder != null) {
+                recordFrame();
+            }
+            if (checkpointer != null && engine.getSimulationClock() >= nextCheckpoint && checkpoint()) {
+                nextCheckpoint += checkpointInterval;
+            }
+            engine.getStatsManager().drainSamples(DISCARD_SAMPLES);
+            if (metrics != null && System.nanoTime() - nextMetrics >= 0L) {
+                metrics.publish(engine.captureMetrics(tick));
+                nextMetrics = System.nanoTime() + METRICS_INTERVAL_NANOS;
+            }
+        }
+        if (metrics != null) {
+            metrics.publish(engine.captureMetrics(tick));
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        PerformanceTracker trips = engine.getPerformanceTracker();
+        RunResult.TripWaitSummary tripWait = new RunResult.TripWaitSummary(trips.getAverageWait(),
+                Math.sqrt(trips.getWaitVariance()), trips.getWaitPercentile(50), trips.getWaitPercentile(95),
+                trips.getWaitPercentile(99), trips.getMaxWait());
+        return new RunResult(engine.getAlgorithmName(), engine.getSimulationClock(), ticks, steps, wallSeconds,
+                engine.getStatsManager().getAverageSampledWait(), engine.getStatsManager().getPeakSampledWait(),
+                engine.getSpawnedCars(), engine.getCompletedCars(), tripWait);
+    }
+
+    private void recordFrame() {
+        try {
+            recorder.recordFrame(engine.getSimulationClock());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void prepareSnapshots() {
+        try {
+            engine.prepareSnapshots();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean checkpoint() {
+        try {
+            return checkpointer.checkpoint(engine);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        AlgorithmType algorithm = AlgorithmType.FIXED_TIME;
+        double hours = 1.0;
+        double delta = DEFAULT_DELTA;
+        Double maxStep = null;
+        Long seed = null;
+        int columns = 1;
+        int rows = 1;
+        double spacing = DEFAULT_GRID_SPACING;
+        int threads = 1;
+        String arrivals = null;
+        DemandProfile profile = DemandProfile.flat();
+        boolean eventDriven = false;
+        IntelligentDriverModel carFollowing = null;
+        Path recordPath = null;
+        Path checkpointPath = null;
+        double checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        Path resumePath = null;
+        Integer metricsPort = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--algorithm" -> algorithm = AlgorithmType.fromKey(requireValue(args, ++i, arg));
+                case "--hours" -> hours = Double.parseDouble(requireValue(args, ++i, arg));
+                case "--dt" -> delta = Double.parseDouble(requireValue(args, ++i, arg));
+                case "--max-step" -> maxStep = Double.parseDouble(requireValue(args, ++i, arg));
+                case "--seed" -> seed = Long.parseLong(requireValue(args, ++i, arg));
+                case "--grid" -> {
+                    String[] size = requireValue(args, ++i, arg).toLowerCase(Locale.ROOT).split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("Grid must look like COLUMNSxROWS: " + args[i]);
+                    }
+                    columns = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                case "--spacing" -> spacing = Double.parseDouble(requireValue(args, ++i, arg));
+                case "--threads" -> threads = Integer.parseInt(requireValue(args, ++i, arg));
+                case "--arrivals" -> arrivals = requireValue(args, ++i, arg);
+                case "--profile" -> profile = parseProfile(requireValue(args, ++i, arg));
+                case "--mode" -> eventDriven = parseMode(requireValue(args, ++i, arg));
+                case "--car-following" -> carFollowing = parseCarFollowing(requireValue(args, ++i, arg));
+                case "--record" -> recordPath = Path.of(requireValue(args, ++i, arg));
+                case "--checkpoint" -> checkpointPath = Path.of(requireValue(args, ++i, arg));
+                case "--checkpoint-every" -> checkpointInterval = Double.parseDouble(requireValue(args, ++i, arg));
+                case "--resume" -> resumePath = Path.of(requireValue(args, ++i, arg));
+                case "--metrics-port" -> metricsPort = Integer.parseInt(requireValue(args, ++i, arg));
+                case "--help" -> {
+                    printUsage();
+                    return;
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        RoadNetwork network = RoadNetwork.grid(columns, rows, spacing, WORLD_WIDTH / 2.0, WORLD_HEIGHT / 2.0);
+        SimulationEngine engine = seed == null
+                ? new SimulationEngine(network)
+                : new SimulationEngine(network, seed);
+        engine.setParallelism(threads);
+        engine.setCarFollowing(carFollowing);
+        if (maxStep != null) {
+            engine.setMaxStep(maxStep);
+        }
+        if (arrivals != null) {
+            engine.setArrivalModel(parseArrivals(arrivals, profile));
+        }
+        HeadlessRunner runner = new HeadlessRunner(engine, delta);
+        runner.setEventDriven(eventDriven);
+        runner.setResumeFrom(resumePath);
+        try (TraceRecorder recorder = recordPath == null ? null : TraceRecorder.open(recordPath, engine);
+             Checkpointer checkpointer = checkpointPath == null ? null : new Checkpointer(checkpointPath);
+             MetricsServer metrics = metricsPort == null ? null : MetricsServer.open(metricsPort)) {
+            runner.setRecorder(recorder);
+            if (metrics != null) {
+                System.out.printf(Locale.ROOT, "Metrics:            http://127.0.0.1:%d%s%n", metrics.getPort(),
+                        MetricsServer.PATH);
+                runner.setMetrics(metrics);
+            }
+            if (checkpointer != null) {
+                runner.setCheckpointer(checkpointer, checkpointInterval);
+            }
+            print(runner.run(algorithm, hours * 3600.0));
+            if (checkpointer != null) {
+                System.out.printf(Locale.ROOT,
+                        "Checkpoints:        %d (capture pause %.3f ms, longest %.3f ms, deferred steps %d)%n",
+                        checkpointer.getWritten(), checkpointer.getLastCaptureMillis(),
+                        checkpointer.getLongestCaptureMillis(), checkpointer.getDeferred());
+            }
+        }
+    }
+
+    static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    // platoon (default), poisson:VEHICLES_PER_HOUR (per approach) or trace:FILE
+    static ArrivalModel parseArrivals(String spec, DemandProfile profile) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String value = colon < 0 ? null : spec.substring(colon + 1);
+        switch (kind.toLowerCase(Locale.ROOT)) {
+            case "platoon" -> {
+                return null;
+            }
+            case "poisson" -> {
+                if (value == null) {
+                    throw new IllegalArgumentException("Poisson arrivals need a rate: poisson:VEHICLES_PER_HOUR");
+                }
+                PoissonArrivals poisson = new PoissonArrivals(Double.parseDouble(value), profile);
+                return (node, direction) -> poisson;
+            }
+            case "trace" -> {
+                if (value == null) {
+                    throw new IllegalArgumentException("Trace arrivals need a file: trace:FILE");
+                }
+                try {
+                    return TraceArrivals.load(Path.of(value));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown arrival model: " + spec);
+        }
+    }
+
+    static boolean parseMode(String key) {
+        return switch (key.toLowerCase(Locale.ROOT)) {
+            case "tick" -> false;
+            case "event" -> true;
+            default -> throw new IllegalArgumentException("Unknown mode: " + key);
+        };
+    }
+
+    static IntelligentDriverModel parseCarFollowing(String key) {
+        return switch (key.toLowerCase(Locale.ROOT)) {
+            case "constant" -> null;
+            case "idm" -> IntelligentDriverModel.standard();
+            default -> throw new IllegalArgumentException("Unknown car-following model: " + key);
+        };
+    }
+
+    static DemandProfile parseProfile(String key) {
+        return switch (key.toLowerCase(Locale.ROOT)) {
+            case "flat" -> DemandProfile.flat();
+            case "rush" -> DemandProfile.rushHour();
+            default -> throw new IllegalArgumentException("Unknown demand profile: " + key);
+        };
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: HeadlessRunner [--algorithm fixed|greenwave|maxpressure] [--hours N] [--dt SECONDS] [--max-step SECONDS] [--seed N] [--grid COLUMNSxROWS] [--spacing PIXELS] [--threads N] [--arrivals platoon|poisson:VPH|trace:FILE] [--profile flat|rush] [--mode tick|event] [--car-following constant|idm] [--record FILE] [--checkpoint FILE] [--checkpoint-every SECONDS] [--resume FILE] [--metrics-port PORT]");
+    }
+
+    static void print(RunResult result) {
+        System.out.printf(Locale.ROOT, "Algorithm:          %s%n", result.algorithm());
+        System.out.printf(Locale.ROOT, "Simulated time:     %.1f s (%d ticks in %d steps)%n", result.simulatedSeconds(), result.ticks(), result.steps());
+        System.out.printf(Locale.ROOT, "Wall time:          %.3f s (%.0fx real time)%n", result.wallSeconds(), result.speedup());
+        System.out.printf(Locale.ROOT, "Average total wait: %.2f s%n", result.averageTotalWait());
+        System.out.printf(Locale.ROOT, "Peak total wait:    %.2f s%n", result.peakTotalWait());
+        System.out.printf(Locale.ROOT, "Cars spawned:       %d%n", result.spawnedCars());
+        System.out.printf(Locale.ROOT, "Cars completed:     %d (%.1f / h)%n", result.completedCars(), result.throughputPerHour());
+        RunResult.TripWaitSummary trip = result.tripWait();
+        System.out.printf(Locale.ROOT, "Wait per trip:      mean %.2f s, sd %.2f s, p50 %.2f s, p95 %.2f s, p99 %.2f s, max %.2f s%n",
+                trip.mean(), trip.standardDeviation(), trip.p50(), trip.p95(), trip.p99(), trip.max());
+    }
+}
@@ -0,0 +1,29 @@
+package traffic.sim.headless;
+
+public record MetricSummary(int samples, double mean, double standardDeviation, double halfWidth95) {
+    private static final double Z_95 = 1.959964;
+
+    public static MetricSummary of(double[] values) {
+        int n = values.length;
+        if (n == 0) {
+            return new MetricSummary(0, 0.0, 0.0, 0.0);
+        }
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = 0; i < n; i++) {
+            double delta = values[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (values[i] - mean);
+        }
+        double stdDev = n > 1 ? Math.sqrt(m2 / (n - 1)) : 0.0;
+        return new MetricSummary(n, mean, stdDev, Z_95 * stdDev / Math.sqrt(n));
+    }
+
+    public double lower95() {
+        return mean - halfWidth95;
+    }
+
+    public double upper95() {
+        return mean + halfWidth95;
+    }
+}
@@ -0,0 +1,117 @@
+package traffic.sim.headless;
+
+import traffic.sim.SimulationEngine;
+import traffic.sim.algorithms.AlgorithmType;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class MonteCarloRunner {
+    private final int runs;
+    private final double durationSeconds;
+    private final double deltaSeconds;
+    private final long baseSeed;
+    private final int parallelism;
+
+    public MonteCarloRunner(int runs, double durationSeconds, double deltaSeconds, long baseSeed, int parallelism) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("Run count must be positive: " + runs);
+        }
+        this.runs = runs;
+        this.durationSeconds = durationSeconds;
+        this.deltaSeconds = deltaSeconds;
+        this.baseSeed = baseSeed;
+        this.parallelism = parallelism;
+    }
+
+    public Map<AlgorithmType, List<RunResult>> run(List<AlgorithmType> algorithms) throws InterruptedException {
+        List<Callable<RunResult>> tasks = new ArrayList<>(algorithms.size() * runs);
+        for (AlgorithmType algorithm : algorithms) {
+            for (int run = 0; run < runs; run++) {
+                // The same seed per run index gives every algorithm identical demand (common random numbers).
+                long seed = SimulationEngine.deriveSeed(baseSeed, run);
+                tasks.add(() -> {
+                    SimulationEngine engine = new SimulationEngine(HeadlessRunner.WORLD_WIDTH, HeadlessRunner.WORLD_HEIGHT, seed);
+                    return new HeadlessRunner(engine, deltaSeconds).run(algorithm, durationSeconds);
+                });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<RunResult>> futures = pool.invokeAll(tasks);
+            Map<AlgorithmType, List<RunResult>> results = new EnumMap<>(AlgorithmType.class);
+            int index = 0;
+            for (AlgorithmType algorithm : algorithms) {
+                List<RunResult> perAlgorithm = new ArrayList<>(runs);
+                for (int run = 0; run < runs; run++) {
+                    perAlgorithm.add(futures.get(index++).get());
+                }
+                results.put(algorithm, perAlgorithm);
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation run failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int runs = 200;
+        double hours = 1.0;
+        double delta = HeadlessRunner.DEFAULT_DELTA;
+        long seed = 42L;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<AlgorithmType> algorithms = List.of(AlgorithmType.values());
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--runs" -> runs = Integer.parseInt(HeadlessRunner.requireValue(args, ++i, arg));
+                case "--hours" -> hours = Double.parseDouble(HeadlessRunner.requireValue(args, ++i, arg));
+                case "--dt" -> delta = Double.parseDouble(HeadlessRunner.requireValue(args, ++i, arg));
+                case "--seed" -> seed = Long.parseLong(HeadlessRunner.requireValue(args, ++i, arg));
+                case "--threads" -> threads = Integer.parseInt(HeadlessRunner.requireValue(args, ++i, arg));
+                case "--algorithm" -> algorithms = List.of(AlgorithmType.fromKey(HeadlessRunner.requireValue(args, ++i, arg)));
+                case "--help" -> {
+                    System.out.println("Usage: MonteCarloRunner [--runs N] [--hours N] [--dt SECONDS] [--seed N] [--threads N] [--algorithm NAME]");
+                    return;
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<AlgorithmType, List<RunResult>> results = new MonteCarloRunner(runs, hours * 3600.0, delta, seed, threads).run(algorithms);
+        double wallSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        double simulatedSeconds = 0.0;
+        System.out.printf(Locale.ROOT, "%-14s %6s %28s %28s%n", "Algorithm", "Runs", "Avg total wait (s) +/-95%", "Throughput (cars/h) +/-95%");
+        for (Map.Entry<AlgorithmType, List<RunResult>> entry : results.entrySet()) {
+            List<RunResult> perAlgorithm = entry.getValue();
+            double[] waits = new double[perAlgorithm.size()];
+            double[] throughputs = new double[perAlgorithm.size()];
+            for (int i = 0; i < perAlgorithm.size(); i++) {
+                RunResult result = perAlgorithm.get(i);
+                waits[i] = result.averageTotalWait();
+                throughputs[i] = result.throughputPerHour();
+                simulatedSeconds += result.simulatedSeconds();
+            }
+            MetricSummary wait = MetricSummary.of(waits);
+            MetricSummary throughput = MetricSummary.of(throughputs);
+            System.out.printf(Locale.ROOT, "%-14s %6d %19.2f +/- %-6.2f %19.1f +/- %-6.1f%n",
+                    perAlgorithm.get(0).algorithm(), wait.samples(),
+                    wait.mean(), wait.halfWidth95(), throughput.mean(), throughput.halfWidth95());
+        }
+        System.out.printf(Locale.ROOT, "%nThreads: %d, wall time: %.2f s, simulated: %.0f s (%.0fx real time)%n",
+                threads, wallSeconds, simulatedSeconds, simulatedSeconds / wallSeconds);
+    }
+}
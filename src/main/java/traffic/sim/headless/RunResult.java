@@ -0,0 +1,30 @@
+package traffic.sim.headless;
+
+public record RunResult(String algorithm,
+                        double simulatedSeconds,
+                        long ticks,
+                        long steps,
+                        double wallSeconds,
+                        double averageTotalWait,
+                        double peakTotalWait,
+                        long spawnedCars,
+                        long completedCars,
+                        TripWaitSummary tripWait) {
+
+    public record TripWaitSummary(double mean, double standardDeviation, double p50, double p95, double p99, double max) {
+    }
+
+    public double throughputPerHour() {
+        if (simulatedSeconds <= 0.0) {
+            return 0.0;
+        }
+        return completedCars * 3600.0 / simulatedSeconds;
+    }
+
+    public double speedup() {
+        if (wallSeconds <= 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return simulatedSeconds / wallSeconds;
+    }
+}
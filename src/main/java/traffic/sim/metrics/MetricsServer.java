@@ -0,0 +1,162 @@
+package traffic.sim.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import traffic.sim.model.Direction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+// Serves the latest published snapshot in the Prometheus text format on http://127.0.0.1:PORT/metrics. The engine's
+// thread only swaps in a new immutable sample; scrapes are answered on the server's own thread and never touch the
+// engine, so a slow or frequent scraper cannot hold up a tick. Rates are taken between the last two samples.
+public class MetricsServer implements Closeable {
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private record Sample(MetricsSnapshot snapshot, long allocatedBytes, MetricsSnapshot previous,
+                          long previousAllocatedBytes) {
+        double perWallSecond(double current, double before) {
+            long elapsed = snapshot.getWallNanos() - previous.getWallNanos();
+            return elapsed <= 0L ? 0.0 : (current - before) * 1_000_000_000.0 / elapsed;
+        }
+    }
+
+    private final HttpServer server;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final com.sun.management.ThreadMXBean threads = allocationCounter();
+    private volatile Sample latest;
+
+    private MetricsServer(HttpServer server) {
+        this.server = server;
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    // Binds to the loopback interface only; port 0 picks a free port.
+    public static MetricsServer open(int port) throws IOException {
+        return new MetricsServer(HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Called by the thread that runs the engine.
+    public void publish(MetricsSnapshot snapshot) {
+        long allocated = allocatedBytes();
+        Sample previous = latest;
+        latest = previous == null
+                ? new Sample(snapshot, allocated, snapshot, allocated)
+                : new Sample(snapshot, allocated, previous.snapshot(), previous.allocatedBytes());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // Contexts match by prefix; only the exact path is the endpoint.
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render(latest).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (head) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private String render(Sample sample) {
+        StringBuilder text = new StringBuilder(2048);
+        if (sample != null) {
+            MetricsSnapshot snapshot = sample.snapshot();
+            MetricsSnapshot previous = sample.previous();
+            metric(text, "traffic_sim_simulated_seconds_total", "counter", "Simulated time since the run started.",
+                    snapshot.getSimulatedSeconds());
+            metric(text, "traffic_sim_speed", "gauge", "Simulated seconds per wall second over the last interval.",
+                    sample.perWallSecond(snapshot.getSimulatedSeconds(), previous.getSimulatedSeconds()));
+            metric(text, "traffic_sim_ticks_total", "counter", "Fixed ticks simulated.", snapshot.getTicks());
+            metric(text, "traffic_sim_ticks_per_second", "gauge", "Ticks per wall second over the last interval.",
+                    sample.perWallSecond(snapshot.getTicks(), previous.getTicks()));
+            header(text, "traffic_sim_vehicles", "gauge", "Vehicles on the lanes, by direction of travel.");
+            for (Direction direction : DIRECTIONS) {
+                text.append("traffic_sim_vehicles{direction=\"").append(direction.name().toLowerCase(Locale.ROOT))
+                        .append("\"} ").append(snapshot.getVehicles(direction)).append('\n');
+            }
+            metric(text, "traffic_sim_total_wait_seconds", "gauge", "Sum of the current waits of all vehicles.",
+                    snapshot.getTotalWait());
+            metric(text, "traffic_sim_spawned_vehicles_total", "counter", "Vehicles that entered the network.",
+                    snapshot.getSpawnedVehicles());
+            metric(text, "traffic_sim_completed_trips_total", "counter", "Vehicles that left the network.",
+                    snapshot.getCompletedTrips());
+            if (sample.allocatedBytes() >= 0L) {
+                metric(text, "jvm_allocated_bytes_total", "counter", "Bytes allocated on the heap since the JVM started.",
+                        sample.allocatedBytes());
+                metric(text, "jvm_allocation_rate_bytes_per_second", "gauge",
+                        "Bytes allocated per wall second over the last interval.",
+                        sample.perWallSecond(sample.allocatedBytes(), sample.previousAllocatedBytes()));
+            }
+        }
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        metric(text, "jvm_heap_used_bytes", "gauge", "Heap in use.", heap.getUsed());
+        metric(text, "jvm_heap_committed_bytes", "gauge", "Heap committed by the JVM.", heap.getCommitted());
+        metric(text, "jvm_heap_max_bytes", "gauge", "Largest heap the JVM may use, or -1 if unbounded.",
+                heap.getMax());
+        return text.toString();
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, double value) {
+        header(text, name, type, help);
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, long value) {
+        header(text, name, type, help);
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    // -1 when the JVM does not count allocations per thread.
+    private long allocatedBytes() {
+        return threads == null ? -1L : threads.getTotalThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,59 @@
+package traffic.sim.metrics;
+
+import traffic.sim.model.Direction;
+
+// Engine counters at one instant, captured on the engine's thread. Immutable, so it can be handed to another
+// thread and read there while the engine keeps running.
+public final class MetricsSnapshot {
+    private final long wallNanos;
+    private final long ticks;
+    private final double simulatedSeconds;
+    private final int[] vehicles;
+    private final double totalWait;
+    private final long spawnedVehicles;
+    private final long completedTrips;
+
+    public MetricsSnapshot(long wallNanos, long ticks, double simulatedSeconds, int[] vehicles, double totalWait,
+                           long spawnedVehicles, long completedTrips) {
+        if (vehicles.length != Direction.values().length) {
+            throw new IllegalArgumentException("Need one vehicle count per direction: " + vehicles.length);
+        }
+        this.wallNanos = wallNanos;
+        this.ticks = ticks;
+        this.simulatedSeconds = simulatedSeconds;
+        this.vehicles = vehicles.clone();
+        this.totalWait = totalWait;
+        this.spawnedVehicles = spawnedVehicles;
+        this.completedTrips = completedTrips;
+    }
+
+    // System.nanoTime() at capture; only differences between snapshots are meaningful.
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public double getSimulatedSeconds() {
+        return simulatedSeconds;
+    }
+
+    // Vehicles on the lanes travelling in the given direction.
+    public int getVehicles(Direction direction) {
+        return vehicles[direction.ordinal()];
+    }
+
+    public double getTotalWait() {
+        return totalWait;
+    }
+
+    public long getSpawnedVehicles() {
+        return spawnedVehicles;
+    }
+
+    public long getCompletedTrips() {
+        return completedTrips;
+    }
+}
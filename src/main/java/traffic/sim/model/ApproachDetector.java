@@ -0,0 +1,182 @@
+package traffic.sim.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Detector readings for one approach, kept current by its lane: the lane reports each car's change of position and
+// motion during the sweep it already makes, so reading a value never walks the cars. The zone is the stretch of
+// road just before the stop line, like an inductive loop.
+public final class ApproachDetector {
+    // The interval counters as of a snapshot. Unlike the instant readings they cannot be rebuilt from the cars.
+    record IntervalState(double elapsed, int arrivals, int departures, double occupiedSeconds, int lastArrivals,
+                         int lastDepartures, double lastOccupancy) {
+        void writeTo(DataOutput out) throws IOException {
+            out.writeDouble(elapsed);
+            out.writeInt(arrivals);
+            out.writeInt(departures);
+            out.writeDouble(occupiedSeconds);
+            out.writeInt(lastArrivals);
+            out.writeInt(lastDepartures);
+            out.writeDouble(lastOccupancy);
+        }
+    }
+
+    public static final double DEFAULT_ZONE_LENGTH = 100.0;
+    public static final double DEFAULT_INTERVAL = 10.0;
+
+    private final double stopLine;
+    private final double zoneStart;
+    private final double interval;
+    private final double vehicleLength;
+
+    private int queueLength;
+    private int zoneCount;
+    private int approachCount;
+
+    private double intervalElapsed;
+    private int intervalArrivals;
+    private int intervalDepartures;
+    private double intervalOccupiedSeconds;
+    private int lastArrivals;
+    private int lastDepartures;
+    private double lastOccupancy;
+
+    public ApproachDetector(double stopLine, double zoneLength, double interval, double vehicleLength) {
+        if (zoneLength <= 0.0 || interval <= 0.0) {
+            throw new IllegalArgumentException("Zone length and interval must be positive: " + zoneLength + ", " + interval);
+        }
+        this.stopLine = stopLine;
+        this.zoneStart = stopLine - zoneLength;
+        this.interval = interval;
+        this.vehicleLength = vehicleLength;
+    }
+
+    // Cars stopped before the stop line.
+    public int getQueueLength() {
+        return queueLength;
+    }
+
+    // Cars inside the detector zone, queued or still moving.
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    // Cars anywhere before the stop line, queued or still moving. Unlike the zone count it does not saturate once
+    // the queue backs up past the zone.
+    public int getApproachCount() {
+        return approachCount;
+    }
+
+    // Share of the zone covered by cars right now.
+    public double getOccupancy() {
+        return Math.min(1.0, zoneCount * vehicleLength / (stopLine - zoneStart));
+    }
+
+    // Cars that entered the lane during the last complete interval.
+    public int getArrivals() {
+        return lastArrivals;
+    }
+
+    // Cars that crossed the stop line during the last complete interval.
+    public int getDepartures() {
+        return lastDepartures;
+    }
+
+    // Time-averaged occupancy over the last complete interval.
+    public double getMeanOccupancy() {
+        return lastOccupancy;
+    }
+
+    public double getInterval() {
+        return interval;
+    }
+
+    public double getZoneStart() {
+        return zoneStart;
+    }
+
+    boolean inZone(double position) {
+        return position >= zoneStart && position < stopLine;
+    }
+
+    void carEntered(double position, boolean moving) {
+        intervalArrivals++;
+        carAdded(position, moving);
+    }
+
+    void carAdded(double position, boolean moving) {
+        if (position < stopLine) {
+            approachCount++;
+            if (!moving) {
+                queueLength++;
+            }
+        }
+        if (inZone(position)) {
+            zoneCount++;
+        }
+    }
+
+    // One car's step in the sweep; stillInLane is false when the step took it past the lane's exit.
+    void carMoved(double before, boolean wasMoving, double after, boolean moving, boolean stillInLane) {
+        if (before < stopLine) {
+            approachCount--;
+            if (!wasMoving) {
+                queueLength--;
+            }
+        }
+        if (inZone(before)) {
+            zoneCount--;
+        }
+        if (before < stopLine && after >= stopLine) {
+            intervalDepartures++;
+        }
+        if (stillInLane) {
+            carAdded(after, moving);
+        }
+    }
+
+    // Called once the sweep is done, so occupancy is weighted by the state the step ended in.
+    void endStep(double deltaSeconds) {
+        intervalElapsed += deltaSeconds;
+        intervalOccupiedSeconds += getOccupancy() * deltaSeconds;
+        if (intervalElapsed >= interval) {
+            lastArrivals = intervalArrivals;
+            lastDepartures = intervalDepartures;
+            lastOccupancy = intervalOccupiedSeconds / intervalElapsed;
+            intervalArrivals = 0;
+            intervalDepartures = 0;
+            intervalOccupiedSeconds = 0.0;
+            intervalElapsed = 0.0;
+        }
+    }
+
+    IntervalState captureIntervals() {
+        return new IntervalState(intervalElapsed, intervalArrivals, intervalDepartures, intervalOccupiedSeconds,
+                lastArrivals, lastDepartures, lastOccupancy);
+    }
+
+    // Reads what IntervalState.writeTo wrote.
+    void readIntervals(DataInput in) throws IOException {
+        intervalElapsed = in.readDouble();
+        intervalArrivals = in.readInt();
+        intervalDepartures = in.readInt();
+        intervalOccupiedSeconds = in.readDouble();
+        lastArrivals = in.readInt();
+        lastDepartures = in.readInt();
+        lastOccupancy = in.readDouble();
+    }
+
+    void reset() {
+        queueLength = 0;
+        zoneCount = 0;
+        approachCount = 0;
+        intervalElapsed = 0.0;
+        intervalArrivals = 0;
+        intervalDepartures = 0;
+        intervalOccupiedSeconds = 0.0;
+        lastArrivals = 0;
+        lastDepartures = 0;
+        lastOccupancy = 0.0;
+    }
+}
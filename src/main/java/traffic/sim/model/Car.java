@@ -1,81 +1,52 @@
 package traffic.sim.model;
 
-import javafx.scene.paint.Color;
-
+// Read-only view of one car in a Lane; valid until the lane is next advanced or cars are added or removed.
 public class Car {
-    private final Direction direction;
-    private double x;
-    private double y;
-    private boolean moving;
-    private double waitTimer;
-    private double cumulativeWait;
-    private final double speed;
-    private final double length;
-    private final Color color;
-
-    public Car(Direction direction, double x, double y, double speed, double length, Color color) {
-        this.direction = direction;
-        this.x = x;
-        this.y = y;
-        this.speed = speed;
-        this.length = length;
-        this.color = color;
-        this.moving = true;
-        this.waitTimer = 0.0;
-        this.cumulativeWait = 0.0;
-    }
+    private final Lane lane;
+    private final int index;
 
-    public void update(double deltaSeconds, boolean allowedToMove) {
-        if (allowedToMove) {
-            moving = true;
-            waitTimer = 0.0;
-            double distance = speed * deltaSeconds;
-            x += distance * direction.dx();
-            y += distance * direction.dy();
-        } else {
-            moving = false;
-            waitTimer += deltaSeconds;
-            cumulativeWait += deltaSeconds;
-        }
-    }
-
-    public void resetWaitTimer() {
-        waitTimer = 0.0;
+    Car(Lane lane, int index) {
+        this.lane = lane;
+        this.index = index;
     }
 
     public Direction getDirection() {
-        return direction;
+        return lane.getDirection();
     }
 
     public double getX() {
-        return x;
+        return lane.x(index);
     }
 
     public double getY() {
-        return y;
+        return lane.y(index);
     }
 
     public boolean isMoving() {
-        return moving;
+        return lane.isMoving(index);
     }
 
     public double getWaitTimer() {
-        return waitTimer;
+        return lane.waitTimer(index);
     }
 
     public double getCumulativeWait() {
-        return cumulativeWait;
+        return lane.cumulativeWait(index);
     }
 
     public double getSpeed() {
-        return speed;
+        return lane.velocity(index);
     }
 
     public double getLength() {
-        return length;
+        return lane.length(index);
+    }
+
+    public VehicleClass getVehicleClass() {
+        return lane.vehicleClass(index);
     }
 
-    public Color getColor() {
-        return color;
+    public int getColorIndex() {
+        return lane.colorIndex(index);
     }
 }
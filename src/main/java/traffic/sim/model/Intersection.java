@@ -1,5 +1,8 @@
 package traffic.sim.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -33,6 +36,18 @@ public class Intersection {
         lights.get(dirB).setState(state);
     }
 
+    public void writeState(DataOutput out) throws IOException {
+        for (TrafficLight light : lights.values()) {
+            light.writeState(out);
+        }
+    }
+
+    public void readState(DataInput in) throws IOException {
+        for (TrafficLight light : lights.values()) {
+            light.readState(in);
+        }
+    }
+
     public void updateLights(double deltaSeconds) {
         lights.values().forEach(light -> light.update(deltaSeconds));
     }
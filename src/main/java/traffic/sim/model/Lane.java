@@ -0,0 +1,922 @@
+package traffic.sim.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// Cars never overtake inside a lane, so index 0 is always the lead car and new cars are appended at the tail.
+// Car state is kept in primitive columns; positions are measured along the direction of travel.
+public class Lane extends AbstractList<Car> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final VehicleClass[] VEHICLE_CLASSES = VehicleClass.values();
+    // Class attributes by ordinal, so the car-following sweeps read primitives rather than enum fields.
+    private static final double[] CLASS_LENGTH = new double[VEHICLE_CLASSES.length];
+    private static final double[] CLASS_HALF_LENGTH = new double[VEHICLE_CLASSES.length];
+    private static final double[] CLASS_INVERSE_MAX_SPEED = new double[VEHICLE_CLASSES.length];
+    private static final double[] CLASS_MAX_ACCELERATION = new double[VEHICLE_CLASSES.length];
+
+    static {
+        for (VehicleClass type : VEHICLE_CLASSES) {
+            CLASS_LENGTH[type.ordinal()] = type.getLength();
+            CLASS_HALF_LENGTH[type.ordinal()] = type.getLength() / 2.0;
+            CLASS_INVERSE_MAX_SPEED[type.ordinal()] = 1.0 / type.getMaxSpeed();
+            CLASS_MAX_ACCELERATION[type.ordinal()] = type.getMaxAcceleration();
+        }
+    }
+
+    public interface ExitListener {
+        void carExited(Lane lane, double cumulativeWaitSeconds);
+    }
+
+    // Car columns handed over to a snapshot. The lane does not write to them again until release() is called, so
+    // they can be serialized on another thread while the simulation carries on. Columns are written one after the
+    // other, in bulk.
+    public static final class FrozenColumns {
+        private static final int CHUNK_BYTES = 1 << 16;
+
+        private final double[] position;
+        private final double[] waitTimer;
+        private final double[] cumulativeWait;
+        private final boolean[] moving;
+        private final byte[] colorIndex;
+        private final double[] velocity;
+        private final byte[] vehicleClass;
+        private final int head;
+        private final int size;
+        private final int stoppedCount;
+        private final double waitSum;
+        private final double delaySeconds;
+        private final ApproachDetector.IntervalState detectorIntervals;
+        private volatile boolean released;
+
+        private FrozenColumns(Lane lane) {
+            this.position = lane.position;
+            this.waitTimer = lane.waitTimer;
+            this.cumulativeWait = lane.cumulativeWait;
+            this.moving = lane.moving;
+            this.colorIndex = lane.colorIndex;
+            this.velocity = lane.velocity;
+            this.vehicleClass = lane.vehicleClass;
+            this.head = lane.head;
+            this.size = lane.size;
+            this.stoppedCount = lane.stoppedCount;
+            this.waitSum = lane.waitSum;
+            this.delaySeconds = lane.delaySeconds;
+            this.detectorIntervals = lane.detector.captureIntervals();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(size);
+            byte[] chunk = new byte[Math.min(CHUNK_BYTES, Math.max(size, 1) * Double.BYTES)];
+            writeColumn(out, position, chunk);
+            writeColumn(out, waitTimer, chunk);
+            writeColumn(out, cumulativeWait, chunk);
+            for (int i = head; i < head + size; i++) {
+                out.writeBoolean(moving[i]);
+            }
+            out.write(colorIndex, head, size);
+            writeColumn(out, velocity, chunk);
+            out.write(vehicleClass, head, size);
+            // The running sums are stored rather than recomputed so a restored run continues bit for bit.
+            out.writeInt(stoppedCount);
+            out.writeDouble(waitSum);
+            out.writeDouble(delaySeconds);
+            detectorIntervals.writeTo(out);
+        }
+
+        private void writeColumn(DataOutput out, double[] column, byte[] chunk) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            int perChunk = chunk.length / Double.BYTES;
+            for (int from = head; from < head + size; from += perChunk) {
+                int count = Math.min(perChunk, head + size - from);
+                buffer.clear();
+                buffer.asDoubleBuffer().put(column, from, count);
+                out.write(chunk, 0, count * Double.BYTES);
+            }
+        }
+
+        // Called once the columns have been written; the lane may then reuse them at its next thaw.
+        public void release() {
+            released = true;
+        }
+    }
+
+    private final Direction direction;
+    private final double crossCoordinate;
+    private final double stopLine;
+    private final double exitPosition;
+    private final double speed;
+    private final double carLength;
+    private final ApproachDetector detector;
+    // Null for the constant-speed model.
+    private IntelligentDriverModel driverModel;
+    private final double[] classInteractionScale = new double[VEHICLE_CLASSES.length];
+    // Running wait aggregates, changed only when a car stops, starts, enters or leaves: the number of stopped cars,
+    // the sum of their current waits and the vehicle-seconds of delay accumulated since the lane was cleared.
+    private int stoppedCount;
+    private double waitSum;
+    private double delaySeconds;
+
+    private double[] position = new double[INITIAL_CAPACITY];
+    private double[] waitTimer = new double[INITIAL_CAPACITY];
+    private double[] cumulativeWait = new double[INITIAL_CAPACITY];
+    private boolean[] moving = new boolean[INITIAL_CAPACITY];
+    private byte[] colorIndex = new byte[INITIAL_CAPACITY];
+    // Only car following reads the velocity column; the constant-speed model keeps it at the entry speed.
+    private double[] velocity = new double[INITIAL_CAPACITY];
+    private byte[] vehicleClass = new byte[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private FrozenColumns frozen;
+    private FrozenColumns retired;
+
+    private Lane downstream;
+    private double leaderLimit = Double.POSITIVE_INFINITY;
+    private double leaderSpeed;
+    private double leaderHalfLength;
+    private double[] leavingPosition = new double[INITIAL_CAPACITY];
+    private double[] leavingWait = new double[INITIAL_CAPACITY];
+    private double[] leavingCumulativeWait = new double[INITIAL_CAPACITY];
+    private byte[] leavingColor = new byte[INITIAL_CAPACITY];
+    private double[] leavingVelocity = new double[INITIAL_CAPACITY];
+    private byte[] leavingClass = new byte[INITIAL_CAPACITY];
+    private boolean[] leavingMoving = new boolean[INITIAL_CAPACITY];
+    private int leavingCount;
+
+    // Per-car inputs and output of the car-following kernel, indexed like the car columns. The class attributes only
+    // change when a car takes a slot, so they are valid up to classColumnsEnd and filled in for new cars only;
+    // anything that moves cars between slots resets classColumnsEnd to -1.
+    private double[] halfLength = new double[0];
+    private double[] inverseDesiredSpeed = new double[0];
+    private double[] accelerationLimit = new double[0];
+    private double[] interactionScale = new double[0];
+    private int classColumnsEnd = -1;
+    private double[] followingGap = new double[0];
+    private double[] closingSpeed = new double[0];
+    private double[] acceleration = new double[0];
+
+    public Lane(Direction direction, double crossCoordinate, double stopLine, double exitPosition,
+                double speed, double carLength) {
+        this.direction = direction;
+        this.crossCoordinate = crossCoordinate;
+        this.stopLine = stopLine;
+        this.exitPosition = exitPosition;
+        this.speed = speed;
+        this.carLength = carLength;
+        this.detector = new ApproachDetector(stopLine, ApproachDetector.DEFAULT_ZONE_LENGTH,
+                ApproachDetector.DEFAULT_INTERVAL, carLength);
+    }
+
+    // Lanes ending at another intersection pass their cars on to that intersection's inbound lane.
+    public void connectTo(Lane downstream) {
+        if (downstream != null && downstream.direction != direction) {
+            throw new IllegalArgumentException("Cannot connect " + direction + " lane to " + downstream.direction + " lane");
+        }
+        this.downstream = downstream;
+    }
+
+    // Freezes the downstream tail as the leader of this lane's head car for the coming sweep, so the result
+    // does not depend on whether the downstream lane has already been advanced.
+    public void captureLeader() {
+        if (downstream == null || downstream.size == 0) {
+            leaderLimit = Double.POSITIVE_INFINITY;
+            leaderSpeed = 0.0;
+            leaderHalfLength = 0.0;
+            return;
+        }
+        int tail = downstream.head + downstream.size - 1;
+        leaderLimit = downstream.position[tail];
+        leaderSpeed = downstream.velocityAt(tail);
+        leaderHalfLength = CLASS_HALF_LENGTH[downstream.vehicleClass[tail]];
+    }
+
+    // Switches between car following (non-null model) and the constant-speed model for the next sweeps.
+    public void setDriverModel(IntelligentDriverModel driverModel) {
+        if (this.driverModel == null && driverModel != null) {
+            // The velocity column is not kept up to date at constant speed.
+            if (frozen != null) {
+                thaw();
+            }
+            for (int i = head; i < head + size; i++) {
+                velocity[i] = velocityAt(i);
+            }
+        }
+        if (driverModel != null) {
+            for (VehicleClass type : VEHICLE_CLASSES) {
+                classInteractionScale[type.ordinal()] = driverModel.getInteractionScale(type);
+            }
+            classColumnsEnd = -1;
+        }
+        this.driverModel = driverModel;
+    }
+
+    public IntelligentDriverModel getDriverModel() {
+        return driverModel;
+    }
+
+    // Moves every car and compacts out the ones that passed the exit in the same sweep. Leaving cars wait in a
+    // buffer until flushLeaving(), so a sweep touches no other lane and lanes can be advanced in any order.
+    public void advance(double deltaSeconds, TrafficLight.LightState lightState, double minSpacing) {
+        if (driverModel != null) {
+            if (frozen != null) {
+                thaw();
+            }
+            advanceFollowing(deltaSeconds, lightState);
+            return;
+        }
+        if (frozen != null) {
+            advanceThawing(deltaSeconds, lightState, minSpacing);
+            return;
+        }
+        double[] position = this.position;
+        double[] waitTimer = this.waitTimer;
+        double[] cumulativeWait = this.cumulativeWait;
+        boolean[] moving = this.moving;
+        double distance = speed * deltaSeconds;
+        boolean green = lightState == TrafficLight.LightState.GREEN;
+        int end = head + size;
+        int start = head;
+        int write = head;
+        int exited = 0;
+        double leader = leaderLimit;
+        for (int i = head; i < end; i++) {
+            double before = position[i];
+            boolean wasMoving = moving[i];
+            double current = before;
+            boolean atSignal = current < stopLine;
+            boolean frontHasSpace = leader - current > minSpacing;
+            if (frontHasSpace && (!atSignal || green)) {
+                current += distance;
+                position[i] = current;
+                if (!wasMoving) {
+                    stoppedCount--;
+                    waitSum -= waitTimer[i];
+                }
+                moving[i] = true;
+                waitTimer[i] = 0.0;
+            } else {
+                if (wasMoving) {
+                    stoppedCount++;
+                }
+                moving[i] = false;
+                waitTimer[i] += deltaSeconds;
+                cumulativeWait[i] += deltaSeconds;
+            }
+            leader = current;
+            detector.carMoved(before, wasMoving, current, moving[i], current <= exitPosition);
+
+            if (current > exitPosition) {
+                exited++;
+                stashLeaving(current, waitTimer[i], cumulativeWait[i], moving[i], colorIndex[i], velocity[i],
+                        vehicleClass[i]);
+                if (write == start) {
+                    start = i + 1;
+                    write = i + 1;
+                }
+                continue;
+            }
+            if (write != i) {
+                moveSlot(i, write);
+            }
+            write++;
+        }
+
+        if (exited > 0) {
+            size = write - start;
+            head = size == 0 ? 0 : start;
+            modCount++;
+        }
+        accumulateWait(deltaSeconds);
+        detector.endStep(deltaSeconds);
+    }
+
+    // Every car stopped after the sweep waited the whole step, including those that just stopped.
+    private void accumulateWait(double deltaSeconds) {
+        if (stoppedCount == 0) {
+            // Nobody waits, so the sum is exactly zero; resetting it here keeps rounding from piling up.
+            waitSum = 0.0;
+            return;
+        }
+        waitSum += stoppedCount * deltaSeconds;
+        delaySeconds += stoppedCount * deltaSeconds;
+    }
+
+    // Car following: every acceleration is computed from the state at the start of the step, then cars are moved
+    // front to back, which is also where they are compacted as in advance(). A stop line held by the signal acts as
+    // a stationary car for those still before it; on yellow only for cars that can stop there comfortably.
+    private void advanceFollowing(double deltaSeconds, TrafficLight.LightState lightState) {
+        IntelligentDriverModel model = driverModel;
+        double[] position = this.position;
+        double[] velocity = this.velocity;
+        int end = head + size;
+        fillClassColumns(end);
+        double[] halfLength = this.halfLength;
+        double[] followingGap = this.followingGap;
+        double[] closingSpeed = this.closingSpeed;
+        if (size > 0) {
+            followingGap[head] = leaderLimit - position[head] - (leaderHalfLength + halfLength[head]);
+            closingSpeed[head] = velocity[head] - leaderSpeed;
+        }
+        for (int i = head + 1; i < end; i++) {
+            followingGap[i] = position[i - 1] - position[i] - (halfLength[i - 1] + halfLength[i]);
+            closingSpeed[i] = velocity[i] - velocity[i - 1];
+        }
+        if (lightState != TrafficLight.LightState.GREEN) {
+            // Cars before the stop line are a suffix of the lane, positions being descending.
+            boolean yellow = lightState == TrafficLight.LightState.YELLOW;
+            double comfortable = model.getComfortableDeceleration();
+            for (int i = end - 1; i >= head && position[i] < stopLine; i--) {
+                double v = velocity[i];
+                double toLine = stopLine - position[i];
+                boolean stops = !yellow || v * v <= 2.0 * comfortable * toLine;
+                if (stops && toLine < followingGap[i]) {
+                    followingGap[i] = toLine;
+                    closingSpeed[i] = v;
+                }
+            }
+        }
+        model.accelerations(followingGap, velocity, closingSpeed, inverseDesiredSpeed, accelerationLimit,
+                interactionScale, acceleration, head, end);
+        // Ballistic update, clamped at standstill; the gap and closing columns are reused for distance and new speed.
+        // A car stopping within the step is credited up to a * dt^2 / 2 too far, far below a pixel.
+        double[] travel = followingGap;
+        double[] nextSpeed = closingSpeed;
+        double halfStep = 0.5 * deltaSeconds;
+        for (int i = head; i < end; i++) {
+            double next = Math.max(0.0, velocity[i] + acceleration[i] * deltaSeconds);
+            nextSpeed[i] = next;
+            travel[i] = (velocity[i] + next) * halfStep;
+        }
+
+        double[] waitTimer = this.waitTimer;
+        double[] cumulativeWait = this.cumulativeWait;
+        boolean[] moving = this.moving;
+        double stoppedSpeed = model.getStoppedSpeed();
+        int start = head;
+        int write = head;
+        int exited = 0;
+        double leader = leaderLimit;
+        double leaderSpeedAfter = leaderSpeed;
+        double leaderHalfLengthAfter = leaderHalfLength;
+        for (int i = head; i < end; i++) {
+            double before = position[i];
+            boolean wasMoving = moving[i];
+            double next = nextSpeed[i];
+            double travelled = travel[i];
+            // Braking is capped, so a car can fail to keep its distance; it still never runs into the car ahead.
+            double room = leader - (leaderHalfLengthAfter + halfLength[i]) - before;
+            if (travelled > room) {
+                travelled = Math.max(0.0, room);
+                next = Math.min(next, leaderSpeedAfter);
+            }
+            double current = before + travelled;
+            boolean isMoving = next > stoppedSpeed;
+            position[i] = current;
+            velocity[i] = next;
+            if (isMoving) {
+                if (!wasMoving) {
+                    stoppedCount--;
+                    waitSum -= waitTimer[i];
+                }
+                waitTimer[i] = 0.0;
+            } else {
+                if (wasMoving) {
+                    stoppedCount++;
+                }
+                waitTimer[i] += deltaSeconds;
+                cumulativeWait[i] += deltaSeconds;
+            }
+            moving[i] = isMoving;
+            leader = current;
+            leaderSpeedAfter = next;
+            leaderHalfLengthAfter = halfLength[i];
+            detector.carMoved(before, wasMoving, current, isMoving, current <= exitPosition);
+
+            if (current > exitPosition) {
+                exited++;
+                if (!isMoving) {
+                    // Crawled over the exit line below the stopped speed: take it out of the lane's aggregates,
+                    // which accumulateWait would otherwise keep growing, but still count this step's delay.
+                    stoppedCount--;
+                    waitSum -= waitTimer[i] - deltaSeconds;
+                    delaySeconds += deltaSeconds;
+                }
+                stashLeaving(current, waitTimer[i], cumulativeWait[i], isMoving, colorIndex[i], next,
+                        vehicleClass[i]);
+                if (write == start) {
+                    start = i + 1;
+                    write = i + 1;
+                }
+                continue;
+            }
+            if (write != i) {
+                moveSlot(i, write);
+            }
+            write++;
+        }
+
+        if (exited > 0) {
+            size = write - start;
+            head = size == 0 ? 0 : start;
+            modCount++;
+        }
+        accumulateWait(deltaSeconds);
+        detector.endStep(deltaSeconds);
+    }
+
+    private void fillClassColumns(int end) {
+        int capacity = position.length;
+        if (acceleration.length != capacity) {
+            halfLength = new double[capacity];
+            inverseDesiredSpeed = new double[capacity];
+            accelerationLimit = new double[capacity];
+            interactionScale = new double[capacity];
+            followingGap = new double[capacity];
+            closingSpeed = new double[capacity];
+            acceleration = new double[capacity];
+            classColumnsEnd = -1;
+        }
+        for (int i = Math.max(head, classColumnsEnd); i < end; i++) {
+            int type = vehicleClass[i];
+            halfLength[i] = CLASS_HALF_LENGTH[type];
+            inverseDesiredSpeed[i] = CLASS_INVERSE_MAX_SPEED[type];
+            accelerationLimit[i] = CLASS_MAX_ACCELERATION[type];
+            interactionScale[i] = classInteractionScale[type];
+        }
+        classColumnsEnd = end;
+    }
+
+    // advance() for the first sweep after a freeze: reads the frozen columns and writes the cars that stay straight
+    // into columns the lane owns, so thawing needs no copy pass of its own.
+    private void advanceThawing(double deltaSeconds, TrafficLight.LightState lightState, double minSpacing) {
+        FrozenColumns source = detachFrozen();
+        double distance = speed * deltaSeconds;
+        boolean green = lightState == TrafficLight.LightState.GREEN;
+        int end = head + size;
+        int write = 0;
+        double leader = leaderLimit;
+        for (int i = head; i < end; i++) {
+            double before = source.position[i];
+            double current = before;
+            double wait = source.waitTimer[i];
+            double totalWait = source.cumulativeWait[i];
+            boolean isMoving;
+            boolean atSignal = current < stopLine;
+            boolean frontHasSpace = leader - current > minSpacing;
+            if (frontHasSpace && (!atSignal || green)) {
+                current += distance;
+                if (!source.moving[i]) {
+                    stoppedCount--;
+                    waitSum -= wait;
+                }
+                isMoving = true;
+                wait = 0.0;
+            } else {
+                if (source.moving[i]) {
+                    stoppedCount++;
+                }
+                isMoving = false;
+                wait += deltaSeconds;
+                totalWait += deltaSeconds;
+            }
+            leader = current;
+            detector.carMoved(before, source.moving[i], current, isMoving, current <= exitPosition);
+
+            if (current > exitPosition) {
+                stashLeaving(current, wait, totalWait, isMoving, source.colorIndex[i], source.velocity[i],
+                        source.vehicleClass[i]);
+                continue;
+            }
+            position[write] = current;
+            waitTimer[write] = wait;
+            cumulativeWait[write] = totalWait;
+            moving[write] = isMoving;
+            colorIndex[write] = source.colorIndex[i];
+            velocity[write] = source.velocity[i];
+            vehicleClass[write] = source.vehicleClass[i];
+            write++;
+        }
+
+        if (write != size) {
+            modCount++;
+        }
+        head = 0;
+        size = write;
+        accumulateWait(deltaSeconds);
+        detector.endStep(deltaSeconds);
+    }
+
+    // Seconds for which every car keeps its current motion, stays in the lane and in the same detector region,
+    // provided the light and the downstream tail keep theirs. Returns 0 when the next advance would start or stop a car. Mirrors advance().
+    public double timeToNextEvent(double deltaSeconds, TrafficLight.LightState lightState, double minSpacing) {
+        if (driverModel != null) {
+            // Under car following speeds change every step.
+            return 0.0;
+        }
+        boolean green = lightState == TrafficLight.LightState.GREEN;
+        double distance = speed * deltaSeconds;
+        double leader = Double.POSITIVE_INFINITY;
+        boolean leaderMoving = false;
+        if (downstream != null && downstream.size > 0) {
+            int tail = downstream.head + downstream.size - 1;
+            leader = downstream.position[tail];
+            leaderMoving = downstream.moving[tail];
+        }
+        double earliest = Double.POSITIVE_INFINITY;
+        int end = head + size;
+        for (int i = head; i < end; i++) {
+            double current = position[i];
+            boolean heldBySignal = current < stopLine && !green;
+            double gap = leader - current;
+            boolean moves = gap > minSpacing && !heldBySignal;
+            if (moves != moving[i]) {
+                return 0.0;
+            }
+            if (moves) {
+                earliest = Math.min(earliest, (exitPosition - current) / speed);
+                // Entering the detector zone or crossing the stop line changes what the detector reports.
+                if (current < stopLine) {
+                    double boundary = current < detector.getZoneStart() ? detector.getZoneStart() : stopLine;
+                    earliest = Math.min(earliest, (boundary - current) / speed);
+                }
+                if (!leaderMoving) {
+                    earliest = Math.min(earliest, (gap - minSpacing) / speed);
+                }
+                current += distance;
+            } else if (!heldBySignal && leaderMoving) {
+                earliest = Math.min(earliest, (minSpacing - gap) / speed);
+            }
+            leader = current;
+            leaderMoving = moves;
+        }
+        return earliest;
+    }
+
+    // Hands leaving cars to the downstream lane, or reports them as finished trips; returns the finished count.
+    public int flushLeaving(ExitListener exitListener) {
+        int completed = 0;
+        for (int i = 0; i < leavingCount; i++) {
+            if (downstream != null) {
+                downstream.append(leavingPosition[i], leavingWait[i], leavingCumulativeWait[i], leavingMoving[i],
+                        leavingColor[i], leavingVelocity[i], leavingClass[i]);
+            } else {
+                exitListener.carExited(this, leavingCumulativeWait[i]);
+                completed++;
+            }
+        }
+        leavingCount = 0;
+        return completed;
+    }
+
+    private void stashLeaving(double carPosition, double wait, double totalWait, boolean isMoving, byte color,
+                              double carVelocity, byte carClass) {
+        if (leavingCount == leavingPosition.length) {
+            int capacity = leavingCount * 2;
+            leavingPosition = Arrays.copyOf(leavingPosition, capacity);
+            leavingWait = Arrays.copyOf(leavingWait, capacity);
+            leavingCumulativeWait = Arrays.copyOf(leavingCumulativeWait, capacity);
+            leavingColor = Arrays.copyOf(leavingColor, capacity);
+            leavingVelocity = Arrays.copyOf(leavingVelocity, capacity);
+            leavingClass = Arrays.copyOf(leavingClass, capacity);
+            leavingMoving = Arrays.copyOf(leavingMoving, capacity);
+        }
+        leavingPosition[leavingCount] = carPosition;
+        leavingWait[leavingCount] = wait;
+        leavingCumulativeWait[leavingCount] = totalWait;
+        leavingColor[leavingCount] = color;
+        leavingVelocity[leavingCount] = carVelocity;
+        leavingClass[leavingCount] = carClass;
+        leavingMoving[leavingCount] = isMoving;
+        leavingCount++;
+    }
+
+    private void moveSlot(int from, int to) {
+        classColumnsEnd = -1;
+        position[to] = position[from];
+        waitTimer[to] = waitTimer[from];
+        cumulativeWait[to] = cumulativeWait[from];
+        moving[to] = moving[from];
+        colorIndex[to] = colorIndex[from];
+        velocity[to] = velocity[from];
+        vehicleClass[to] = vehicleClass[from];
+    }
+
+    // Sum of the current waits of the cars in the lane.
+    public double totalWaitTimer() {
+        return waitSum;
+    }
+
+    public int stoppedCount() {
+        return stoppedCount;
+    }
+
+    // Vehicle-seconds spent stopped in this lane since it was last cleared.
+    public double accumulatedDelay() {
+        return delaySeconds;
+    }
+
+    public void addLast(double carPosition, int color) {
+        addLast(carPosition, color, VehicleClass.CAR, speed);
+    }
+
+    public void addLast(double carPosition, int color, VehicleClass type, double initialSpeed) {
+        append(carPosition, 0.0, 0.0, true, (byte) color, initialSpeed, (byte) type.ordinal());
+    }
+
+    private void append(double carPosition, double wait, double totalWait, boolean isMoving, byte color,
+                        double carVelocity, byte carClass) {
+        // Slots past the frozen cars are free to write; only sliding or growing the window needs owned columns.
+        if (head + size == position.length) {
+            if (frozen != null) {
+                thaw();
+            }
+            if (head + size == position.length) {
+                makeRoomAtTail();
+            }
+        }
+        int slot = head + size;
+        classColumnsEnd = Math.min(classColumnsEnd, slot);
+        position[slot] = carPosition;
+        waitTimer[slot] = wait;
+        cumulativeWait[slot] = totalWait;
+        moving[slot] = isMoving;
+        colorIndex[slot] = color;
+        velocity[slot] = carVelocity;
+        vehicleClass[slot] = carClass;
+        size++;
+        modCount++;
+        if (!isMoving) {
+            stoppedCount++;
+        }
+        waitSum += wait;
+        detector.carEntered(carPosition, isMoving);
+    }
+
+    @Override
+    public void clear() {
+        if (frozen != null) {
+            detachFrozen();
+        }
+        head = 0;
+        size = 0;
+        leavingCount = 0;
+        leaderLimit = Double.POSITIVE_INFINITY;
+        leaderSpeed = 0.0;
+        leaderHalfLength = 0.0;
+        stoppedCount = 0;
+        classColumnsEnd = -1;
+        waitSum = 0.0;
+        delaySeconds = 0.0;
+        detector.reset();
+        modCount++;
+    }
+
+    // Copy-on-write: capturing costs nothing, the columns are copied by the lane's next write instead.
+    public FrozenColumns freeze() {
+        if (frozen != null) {
+            // Frozen twice without a sweep in between; each snapshot must release its own columns.
+            thaw();
+        }
+        frozen = new FrozenColumns(this);
+        return frozen;
+    }
+
+    private void thaw() {
+        FrozenColumns shared = detachFrozen();
+        System.arraycopy(shared.position, head, position, 0, size);
+        System.arraycopy(shared.waitTimer, head, waitTimer, 0, size);
+        System.arraycopy(shared.cumulativeWait, head, cumulativeWait, 0, size);
+        System.arraycopy(shared.moving, head, moving, 0, size);
+        System.arraycopy(shared.colorIndex, head, colorIndex, 0, size);
+        System.arraycopy(shared.velocity, head, velocity, 0, size);
+        System.arraycopy(shared.vehicleClass, head, vehicleClass, 0, size);
+        head = 0;
+    }
+
+    // Points the lane at columns it owns, those of the previous snapshot once written or else fresh ones, without
+    // copying any car. Returns the frozen columns, which become the candidates for the next thaw.
+    private FrozenColumns detachFrozen() {
+        FrozenColumns shared = frozen;
+        FrozenColumns reusable = retired;
+        int capacity = position.length;
+        if (reusable != null && reusable.released && reusable.position.length >= capacity) {
+            position = reusable.position;
+            waitTimer = reusable.waitTimer;
+            cumulativeWait = reusable.cumulativeWait;
+            moving = reusable.moving;
+            colorIndex = reusable.colorIndex;
+            velocity = reusable.velocity;
+            vehicleClass = reusable.vehicleClass;
+        } else {
+            position = new double[capacity];
+            waitTimer = new double[capacity];
+            cumulativeWait = new double[capacity];
+            moving = new boolean[capacity];
+            colorIndex = new byte[capacity];
+            velocity = new double[capacity];
+            vehicleClass = new byte[capacity];
+        }
+        retired = shared;
+        frozen = null;
+        classColumnsEnd = -1;
+        return shared;
+    }
+
+    // Reads what FrozenColumns.writeTo wrote, replacing the lane's cars.
+    public void readState(DataInput in) throws IOException {
+        clear();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative car count: " + count);
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, count)) << 1);
+        position = new double[capacity];
+        waitTimer = new double[capacity];
+        cumulativeWait = new double[capacity];
+        moving = new boolean[capacity];
+        colorIndex = new byte[capacity];
+        velocity = new double[capacity];
+        vehicleClass = new byte[capacity];
+        frozen = null;
+        retired = null;
+        readColumn(in, position, count);
+        readColumn(in, waitTimer, count);
+        readColumn(in, cumulativeWait, count);
+        for (int i = 0; i < count; i++) {
+            moving[i] = in.readBoolean();
+        }
+        in.readFully(colorIndex, 0, count);
+        readColumn(in, velocity, count);
+        in.readFully(vehicleClass, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (vehicleClass[i] < 0 || vehicleClass[i] >= VEHICLE_CLASSES.length) {
+                throw new IOException("Unknown vehicle class: " + vehicleClass[i]);
+            }
+        }
+        size = count;
+        stoppedCount = in.readInt();
+        waitSum = in.readDouble();
+        delaySeconds = in.readDouble();
+        // Instant readings follow from the cars; the interval counts were stored.
+        for (int i = 0; i < count; i++) {
+            detector.carAdded(position[i], moving[i]);
+        }
+        detector.readIntervals(in);
+    }
+
+    private static void readColumn(DataInput in, double[] column, int count) throws IOException {
+        byte[] chunk = new byte[Math.min(FrozenColumns.CHUNK_BYTES, Math.max(count, 1) * Double.BYTES)];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int perChunk = chunk.length / Double.BYTES;
+        for (int from = 0; from < count; from += perChunk) {
+            int n = Math.min(perChunk, count - from);
+            in.readFully(chunk, 0, n * Double.BYTES);
+            buffer.clear();
+            buffer.asDoubleBuffer().get(column, from, n);
+        }
+    }
+
+    private void makeRoomAtTail() {
+        // Slide the live window back to the start when at least half the buffer is free, otherwise double it.
+        int capacity = size * 2 <= position.length ? position.length : position.length * 2;
+        position = copyColumn(position, capacity);
+        waitTimer = copyColumn(waitTimer, capacity);
+        cumulativeWait = copyColumn(cumulativeWait, capacity);
+        moving = copyColumn(moving, capacity);
+        colorIndex = copyColumn(colorIndex, capacity);
+        velocity = copyColumn(velocity, capacity);
+        vehicleClass = copyColumn(vehicleClass, capacity);
+        head = 0;
+        classColumnsEnd = -1;
+    }
+
+    private double[] copyColumn(double[] column, int capacity) {
+        double[] target = capacity == column.length ? column : new double[capacity];
+        System.arraycopy(column, head, target, 0, size);
+        return target;
+    }
+
+    private boolean[] copyColumn(boolean[] column, int capacity) {
+        boolean[] target = capacity == column.length ? column : new boolean[capacity];
+        System.arraycopy(column, head, target, 0, size);
+        return target;
+    }
+
+    private byte[] copyColumn(byte[] column, int capacity) {
+        byte[] target = capacity == column.length ? column : new byte[capacity];
+        System.arraycopy(column, head, target, 0, size);
+        return target;
+    }
+
+    @Override
+    public Car get(int index) {
+        checkIndex(index);
+        return new Car(this, index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public double position(int index) {
+        return position[head + index];
+    }
+
+    public double tailPosition() {
+        if (size == 0) {
+            throw new NoSuchElementException("Lane is empty");
+        }
+        return position[head + size - 1];
+    }
+
+    public double x(int index) {
+        return direction.dx() != 0 ? position[head + index] * direction.dx() : crossCoordinate;
+    }
+
+    public double y(int index) {
+        return direction.dy() != 0 ? position[head + index] * direction.dy() : crossCoordinate;
+    }
+
+    public double waitTimer(int index) {
+        return waitTimer[head + index];
+    }
+
+    public double cumulativeWait(int index) {
+        return cumulativeWait[head + index];
+    }
+
+    public boolean isMoving(int index) {
+        return moving[head + index];
+    }
+
+    public int colorIndex(int index) {
+        return colorIndex[head + index];
+    }
+
+    public double velocity(int index) {
+        return velocityAt(head + index);
+    }
+
+    public VehicleClass vehicleClass(int index) {
+        return VEHICLE_CLASSES[vehicleClass[head + index]];
+    }
+
+    public double length(int index) {
+        return CLASS_LENGTH[vehicleClass[head + index]];
+    }
+
+    private double velocityAt(int slot) {
+        if (driverModel != null) {
+            return velocity[slot];
+        }
+        return moving[slot] ? speed : 0.0;
+    }
+
+    public ApproachDetector getDetector() {
+        return detector;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public Lane getDownstream() {
+        return downstream;
+    }
+
+    public double getCrossCoordinate() {
+        return crossCoordinate;
+    }
+
+    public double getStopLine() {
+        return stopLine;
+    }
+
+    public double getExitPosition() {
+        return exitPosition;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getCarLength() {
+        return carLength;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for lane of size " + size);
+        }
+    }
+}
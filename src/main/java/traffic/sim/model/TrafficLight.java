@@ -1,5 +1,9 @@
 package traffic.sim.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class TrafficLight {
     public enum LightState {
         RED,
@@ -28,6 +32,16 @@ public class TrafficLight {
         }
     }
 
+    public void writeState(DataOutput out) throws IOException {
+        out.writeByte(state.ordinal());
+        out.writeDouble(timeInState);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        state = LightState.values()[in.readUnsignedByte()];
+        timeInState = in.readDouble();
+    }
+
     public LightState getState() {
         return state;
     }
@@ -0,0 +1,30 @@
+package traffic.sim.model;
+
+// Vehicle types for car-following mode; lengths in pixels, speeds in pixels per second (about 5.8 px to the metre).
+public enum VehicleClass {
+    CAR(26.0, 90.0, 12.0),
+    TRUCK(46.0, 70.0, 6.0),
+    BUS(58.0, 75.0, 7.0);
+
+    private final double length;
+    private final double maxSpeed;
+    private final double maxAcceleration;
+
+    VehicleClass(double length, double maxSpeed, double maxAcceleration) {
+        this.length = length;
+        this.maxSpeed = maxSpeed;
+        this.maxAcceleration = maxAcceleration;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public double getMaxAcceleration() {
+        return maxAcceleration;
+    }
+}
@@ -0,0 +1,119 @@
+package traffic.sim.network;
+
+import traffic.sim.algorithms.SignalAlgorithm;
+import traffic.sim.controller.TrafficController;
+import traffic.sim.model.Direction;
+import traffic.sim.model.Intersection;
+import traffic.sim.model.Lane;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class NetworkNode {
+    private final int id;
+    private final int column;
+    private final int row;
+    private final double centerX;
+    private final double centerY;
+    private final Intersection intersection = new Intersection();
+    private final TrafficController controller;
+    private final Map<Direction, Lane> lanes = new EnumMap<>(Direction.class);
+    private final Map<Direction, RoadLink> inbound = new EnumMap<>(Direction.class);
+    private final Map<Direction, RoadLink> outbound = new EnumMap<>(Direction.class);
+    private SignalAlgorithm algorithm;
+
+    public NetworkNode(int id, int column, int row, double centerX, double centerY) {
+        this.id = id;
+        this.column = column;
+        this.row = row;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.controller = new TrafficController(intersection, id);
+    }
+
+    public void updateSignals(double deltaSeconds) {
+        controller.update(deltaSeconds);
+        intersection.updateLights(deltaSeconds);
+        algorithm.update(deltaSeconds, controller, lanes);
+    }
+
+    public double timeToNextSignalEvent() {
+        return Math.min(controller.timeToNextTransition(), algorithm.timeToNextDecision(controller, lanes));
+    }
+
+    public void resetSignals() {
+        controller.reset(TrafficController.DirectionGroup.EAST_WEST);
+        if (algorithm != null) {
+            algorithm.reset(controller);
+        }
+    }
+
+    public void setAlgorithm(SignalAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public SignalAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void putLane(Lane lane) {
+        lanes.put(lane.getDirection(), lane);
+    }
+
+    public Lane getLane(Direction direction) {
+        return lanes.get(direction);
+    }
+
+    public Map<Direction, Lane> getLanes() {
+        return lanes;
+    }
+
+    // A lane is an entry lane when no link delivers traffic travelling in its direction: cars are spawned there.
+    public boolean isEntry(Direction direction) {
+        return !inbound.containsKey(direction);
+    }
+
+    public RoadLink getInbound(Direction direction) {
+        return inbound.get(direction);
+    }
+
+    public RoadLink getOutbound(Direction direction) {
+        return outbound.get(direction);
+    }
+
+    void addOutbound(RoadLink link) {
+        outbound.put(link.getDirection(), link);
+    }
+
+    void addInbound(RoadLink link) {
+        inbound.put(link.getDirection(), link);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public Intersection getIntersection() {
+        return intersection;
+    }
+
+    public TrafficController getController() {
+        return controller;
+    }
+}
@@ -0,0 +1,31 @@
+package traffic.sim.network;
+
+import traffic.sim.model.Direction;
+
+public class RoadLink {
+    private final NetworkNode from;
+    private final NetworkNode to;
+    private final Direction direction;
+
+    public RoadLink(NetworkNode from, NetworkNode to, Direction direction) {
+        this.from = from;
+        this.to = to;
+        this.direction = direction;
+    }
+
+    public NetworkNode getFrom() {
+        return from;
+    }
+
+    public NetworkNode getTo() {
+        return to;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public double getLength() {
+        return Math.hypot(to.getCenterX() - from.getCenterX(), to.getCenterY() - from.getCenterY());
+    }
+}
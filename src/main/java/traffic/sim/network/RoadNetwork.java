@@ -0,0 +1,94 @@
+package traffic.sim.network;
+
+import traffic.sim.model.Direction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RoadNetwork {
+    private final double width;
+    private final double height;
+    private final int columns;
+    private final int rows;
+    private final List<NetworkNode> nodes;
+    private final List<RoadLink> links;
+
+    private RoadNetwork(double width, double height, int columns, int rows, List<NetworkNode> nodes, List<RoadLink> links) {
+        this.width = width;
+        this.height = height;
+        this.columns = columns;
+        this.rows = rows;
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.links = Collections.unmodifiableList(links);
+    }
+
+    public static RoadNetwork singleIntersection(double width, double height) {
+        return grid(1, 1, 0.0, width / 2.0, height / 2.0);
+    }
+
+    // Builds a columns x rows grid of intersections, spacing apart, with two-way links between neighbours.
+    public static RoadNetwork grid(int columns, int rows, double spacing, double marginX, double marginY) {
+        if (columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Grid needs at least one column and one row: " + columns + "x" + rows);
+        }
+        List<NetworkNode> nodes = new ArrayList<>(columns * rows);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                nodes.add(new NetworkNode(nodes.size(), column, row, marginX + column * spacing, marginY + row * spacing));
+            }
+        }
+
+        List<RoadLink> links = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                NetworkNode node = nodes.get(row * columns + column);
+                if (column + 1 < columns) {
+                    NetworkNode east = nodes.get(row * columns + column + 1);
+                    link(links, node, east, Direction.EAST);
+                    link(links, east, node, Direction.WEST);
+                }
+                if (row + 1 < rows) {
+                    NetworkNode south = nodes.get((row + 1) * columns + column);
+                    link(links, node, south, Direction.SOUTH);
+                    link(links, south, node, Direction.NORTH);
+                }
+            }
+        }
+
+        double width = 2.0 * marginX + (columns - 1) * spacing;
+        double height = 2.0 * marginY + (rows - 1) * spacing;
+        return new RoadNetwork(width, height, columns, rows, nodes, links);
+    }
+
+    private static void link(List<RoadLink> links, NetworkNode from, NetworkNode to, Direction direction) {
+        RoadLink link = new RoadLink(from, to, direction);
+        from.addOutbound(link);
+        to.addInbound(link);
+        links.add(link);
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public List<NetworkNode> getNodes() {
+        return nodes;
+    }
+
+    public List<RoadLink> getLinks() {
+        return links;
+    }
+}
@@ -0,0 +1,38 @@
+package traffic.sim.runtime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free exchange of frames between one writer and one reader. Besides the frame each side holds, a third one
+// sits in the middle slot: publishing swaps the written frame into it and reading swaps the newest one out, so
+// neither side ever waits or sees a frame the other is still using.
+public final class FrameBuffer {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final FrameSnapshot[] frames = {new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    // Writer side: the frame to fill before the next publish().
+    FrameSnapshot writeFrame() {
+        return frames[back];
+    }
+
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // True while the last published frame has not been picked up yet.
+    boolean hasUnreadFrame() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    // Reader side: the newest published frame, which stays untouched until the next call.
+    public FrameSnapshot readFrame() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return frames[front];
+    }
+}
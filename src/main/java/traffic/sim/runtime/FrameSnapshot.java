@@ -0,0 +1,178 @@
+package traffic.sim.runtime;
+
+import traffic.sim.SimulationEngine;
+import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
+import traffic.sim.model.TrafficLight;
+import traffic.sim.network.NetworkNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+// What the canvas needs to draw one frame, copied out of the engine on the simulation thread. FrameBuffer makes
+// sure a frame is only filled while the reader cannot see it, so reads need no locking. Cars are grouped by lane in
+// engine lane order and keep the lane's head-first order, so positions within a lane are descending.
+public final class FrameSnapshot {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final TrafficLight.LightState[] LIGHT_STATES = TrafficLight.LightState.values();
+
+    private double simulationTime;
+    private double totalWait;
+    private int carCount;
+    private int[] laneStart = new int[1];
+    private double[] position = new double[256];
+    private double[] x = new double[256];
+    private double[] y = new double[256];
+    private double[] waitTimer = new double[256];
+    private double[] length = new double[256];
+    // lengthBefore[car] is the summed length of all cars in slots before it, so any run of cars sums in O(1).
+    private double[] lengthBefore = new double[257];
+    private byte[] direction = new byte[256];
+    private byte[] colorIndex = new byte[256];
+    private byte[] lights = new byte[1];
+
+    void capture(SimulationEngine engine) {
+        simulationTime = engine.getSimulationClock();
+        totalWait = engine.getTotalWait();
+
+        List<NetworkNode> nodes = engine.getNetwork().getNodes();
+        if (lights.length < nodes.size()) {
+            lights = new byte[nodes.size()];
+        }
+        for (int n = 0; n < nodes.size(); n++) {
+            int packed = 0;
+            for (Direction d : DIRECTIONS) {
+                packed |= nodes.get(n).getIntersection().getLight(d).getState().ordinal() << (d.ordinal() * 2);
+            }
+            lights[n] = (byte) packed;
+        }
+
+        List<Lane> lanes = engine.getLanes();
+        int total = 0;
+        for (int l = 0; l < lanes.size(); l++) {
+            total += lanes.get(l).size();
+        }
+        ensureCapacity(total);
+        if (laneStart.length < lanes.size() + 1) {
+            laneStart = new int[lanes.size() + 1];
+        }
+        int slot = 0;
+        for (int l = 0; l < lanes.size(); l++) {
+            Lane lane = lanes.get(l);
+            byte laneDirection = (byte) lane.getDirection().ordinal();
+            laneStart[l] = slot;
+            for (int i = 0; i < lane.size(); i++) {
+                position[slot] = lane.position(i);
+                x[slot] = lane.x(i);
+                y[slot] = lane.y(i);
+                waitTimer[slot] = lane.waitTimer(i);
+                length[slot] = lane.length(i);
+                lengthBefore[slot + 1] = lengthBefore[slot] + length[slot];
+                direction[slot] = laneDirection;
+                colorIndex[slot] = (byte) lane.colorIndex(i);
+                slot++;
+            }
+        }
+        laneStart[lanes.size()] = slot;
+        carCount = total;
+    }
+
+    private void ensureCapacity(int cars) {
+        if (cars <= x.length) {
+            return;
+        }
+        int capacity = Math.max(cars, x.length * 2);
+        position = Arrays.copyOf(position, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        waitTimer = Arrays.copyOf(waitTimer, capacity);
+        length = Arrays.copyOf(length, capacity);
+        lengthBefore = Arrays.copyOf(lengthBefore, capacity + 1);
+        direction = Arrays.copyOf(direction, capacity);
+        colorIndex = Arrays.copyOf(colorIndex, capacity);
+    }
+
+    public double getSimulationTime() {
+        return simulationTime;
+    }
+
+    public double getTotalWait() {
+        return totalWait;
+    }
+
+    public int getCarCount() {
+        return carCount;
+    }
+
+    // Cars of engine lane number lane are getLaneStart(lane) inclusive to getLaneStart(lane + 1) exclusive.
+    public int getLaneStart(int lane) {
+        return laneStart[lane];
+    }
+
+    // First car of the lane at or behind the given position, or the end of the lane's range.
+    public int firstAtOrBelow(int lane, double limit) {
+        int low = laneStart[lane];
+        int high = laneStart[lane + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (position[mid] <= limit) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // First car of the lane strictly behind the given position, or the end of the lane's range.
+    public int firstBelow(int lane, double limit) {
+        int low = laneStart[lane];
+        int high = laneStart[lane + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (position[mid] < limit) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public double getPosition(int car) {
+        return position[car];
+    }
+
+    public double getX(int car) {
+        return x[car];
+    }
+
+    public double getY(int car) {
+        return y[car];
+    }
+
+    public double getWaitTimer(int car) {
+        return waitTimer[car];
+    }
+
+    public double getLength(int car) {
+        return length[car];
+    }
+
+    // Summed length of the cars from car from inclusive to car to exclusive.
+    public double getLengthBetween(int from, int to) {
+        return lengthBefore[to] - lengthBefore[from];
+    }
+
+    public Direction getDirection(int car) {
+        return DIRECTIONS[direction[car]];
+    }
+
+    public int getColorIndex(int car) {
+        return colorIndex[car];
+    }
+
+    public TrafficLight.LightState getLight(int node, Direction d) {
+        return LIGHT_STATES[(lights[node] >>> (d.ordinal() * 2)) & 0x3];
+    }
+}
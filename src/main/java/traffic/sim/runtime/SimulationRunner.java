@@ -0,0 +1,137 @@
+package traffic.sim.runtime;
+
+import traffic.sim.SimulationEngine;
+import traffic.sim.stats.SampleQueue;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Runs the engine on its own thread at a fixed step, speed times faster than the wall clock. Other threads never
+// touch the engine: they submit commands, which run between ticks, and read frames from getFrames().
+public class SimulationRunner {
+    private static final long IDLE_PARK_NANOS = 5_000_000L;
+    // A frame nobody has read yet is only replaced once it is this old, which saves copying when the reader is slow.
+    private static final long STALE_FRAME_NANOS = 8_000_000L;
+    // Simulated time owed beyond this is dropped rather than caught up, so a stall does not turn into a burst.
+    private static final double MAX_BACKLOG_SECONDS = 0.25;
+    // Wall time one catch-up burst may take. Frames and commands are then handled before ticking on, so at a speed
+    // the machine cannot sustain the view stays live and the surplus is dropped by the backlog cap.
+    private static final long CATCH_UP_BUDGET_NANOS = 12_000_000L;
+    private static final long SPEED_WINDOW_NANOS = 1_000_000_000L;
+
+    private final SimulationEngine engine;
+    private final double deltaSeconds;
+    private final FrameBuffer frames = new FrameBuffer();
+    private final Queue<Consumer<SimulationEngine>> commands = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean paused = true;
+    private volatile boolean stopped;
+    private volatile double speed = 1.0;
+    private volatile double achievedSpeed;
+
+    public SimulationRunner(SimulationEngine engine, double deltaSeconds) {
+        if (deltaSeconds <= 0.0) {
+            throw new IllegalArgumentException("Delta must be positive: " + deltaSeconds);
+        }
+        this.engine = engine;
+        this.deltaSeconds = deltaSeconds;
+        this.thread = new Thread(this::runLoop, "simulation");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        LockSupport.unpark(thread);
+    }
+
+    public void setSpeed(double speed) {
+        if (speed <= 0.0) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    // Runs on the simulation thread before the next tick.
+    public void submit(Consumer<SimulationEngine> command) {
+        commands.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    // Simulated seconds per wall second over the last second; lower than getSpeed() when ticks had to be dropped.
+    public double getAchievedSpeed() {
+        return achievedSpeed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public FrameBuffer getFrames() {
+        return frames;
+    }
+
+    // Stats samples go straight from the engine's lock-free queue to the sink; call from one thread only.
+    public int drainSamples(SampleQueue.SampleSink sink) {
+        return engine.getStatsManager().drainSamples(sink);
+    }
+
+    private void runLoop() {
+        boolean dirty = true;
+        double owed = 0.0;
+        long last = System.nanoTime();
+        long lastPublish = last;
+        long windowStart = last;
+        double windowSimulated = 0.0;
+        while (!stopped) {
+            Consumer<SimulationEngine> command;
+            while ((command = commands.poll()) != null) {
+                command.accept(engine);
+                owed = 0.0;
+                dirty = true;
+            }
+
+            long now = System.nanoTime();
+            double elapsed = (now - last) / 1_000_000_000.0;
+            last = now;
+            owed = paused ? 0.0 : Math.min(owed + elapsed * speed, MAX_BACKLOG_SECONDS * Math.max(1.0, speed));
+            long budgetEnd = now + CATCH_UP_BUDGET_NANOS;
+            while (owed >= deltaSeconds && !stopped) {
+                engine.update(deltaSeconds);
+                owed -= deltaSeconds;
+                windowSimulated += deltaSeconds;
+                dirty = true;
+                if (System.nanoTime() - budgetEnd >= 0) {
+                    break;
+                }
+            }
+            if (now - windowStart >= SPEED_WINDOW_NANOS) {
+                achievedSpeed = windowSimulated * 1_000_000_000.0 / (now - windowStart);
+                windowStart = now;
+                windowSimulated = 0.0;
+            }
+
+            if (dirty && (!frames.hasUnreadFrame() || now - lastPublish >= STALE_FRAME_NANOS)) {
+                frames.writeFrame().capture(engine);
+                frames.publish();
+                lastPublish = now;
+                dirty = false;
+            }
+
+            long untilNextTick = paused
+                    ? IDLE_PARK_NANOS
+                    : (long) ((deltaSeconds - owed) / speed * 1_000_000_000.0);
+            LockSupport.parkNanos(Math.min(untilNextTick, IDLE_PARK_NANOS));
+        }
+    }
+}
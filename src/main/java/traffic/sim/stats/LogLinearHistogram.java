@@ -0,0 +1,107 @@
+package traffic.sim.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Fixed-size histogram with buckets that are linear below 2^SUB_BUCKET_BITS and log-linear above it,
+// so every recorded value lands in a bucket no wider than 1/128 of its magnitude.
+public class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private final long maxTrackableValue;
+    private final long[] counts;
+    private long totalCount;
+
+    public LogLinearHistogram(long maxTrackableValue) {
+        if (maxTrackableValue < SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("Max trackable value must be at least " + SUB_BUCKET_COUNT);
+        }
+        this.maxTrackableValue = maxTrackableValue;
+        this.counts = new long[bucketIndex(maxTrackableValue) + 1];
+    }
+
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0L), maxTrackableValue);
+        counts[bucketIndex(clamped)]++;
+        totalCount++;
+    }
+
+    // Returns the midpoint of the bucket holding the given percentile (0-100) of recorded values.
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return Math.min(bucketMidpoint(index), maxTrackableValue);
+            }
+        }
+        return maxTrackableValue;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        totalCount = 0;
+    }
+
+    // Only non-empty buckets are written, as (index, count) pairs.
+    public void writeState(DataOutput out) throws IOException {
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        out.writeLong(totalCount);
+        out.writeInt(used);
+        for (int index = 0; index < counts.length; index++) {
+            if (counts[index] != 0) {
+                out.writeInt(index);
+                out.writeLong(counts[index]);
+            }
+        }
+    }
+
+    public void readState(DataInput in) throws IOException {
+        reset();
+        totalCount = in.readLong();
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= counts.length) {
+                throw new IOException("Histogram bucket out of range: " + index);
+            }
+            counts[index] = in.readLong();
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int top = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (top - HALF_SUB_BUCKET_COUNT);
+    }
+
+    private static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+        long top = HALF_SUB_BUCKET_COUNT + offset % HALF_SUB_BUCKET_COUNT;
+        return (top << shift) + (1L << (shift - 1));
+    }
+}
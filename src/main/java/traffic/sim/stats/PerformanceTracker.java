@@ -1,19 +1,33 @@
 package traffic.sim.stats;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PerformanceTracker {
     private static final double SAMPLE_INTERVAL = 1.0;
+    private static final double HISTOGRAM_UNITS_PER_SECOND = 1000.0;
+    private static final long MAX_TRACKED_WAIT_UNITS = 7L * 24 * 3600 * 1000;
 
     private double totalWaitTime;
-    private int completedCars;
+    private long completedCars;
+    private double meanWait;
+    private double waitSquaredDeviations;
+    private double maxWait;
+    private final LogLinearHistogram waitHistogram = new LogLinearHistogram(MAX_TRACKED_WAIT_UNITS);
     private double sampleAccumulator;
     private final List<PerformanceSample> pendingSamples = new ArrayList<>();
 
     public void recordCarFinished(double waitTimeSeconds) {
         totalWaitTime += waitTimeSeconds;
         completedCars++;
+        double delta = waitTimeSeconds - meanWait;
+        meanWait += delta / completedCars;
+        waitSquaredDeviations += delta * (waitTimeSeconds - meanWait);
+        maxWait = Math.max(maxWait, waitTimeSeconds);
+        waitHistogram.record(Math.round(waitTimeSeconds * HISTOGRAM_UNITS_PER_SECOND));
     }
 
     public double getAverageWait() {
@@ -23,10 +37,25 @@ public class PerformanceTracker {
         return totalWaitTime / completedCars;
     }
 
-    public int getCompletedCars() {
+    public long getCompletedCars() {
         return completedCars;
     }
 
+    public double getWaitVariance() {
+        if (completedCars < 2) {
+            return 0.0;
+        }
+        return waitSquaredDeviations / (completedCars - 1);
+    }
+
+    public double getMaxWait() {
+        return maxWait;
+    }
+
+    public double getWaitPercentile(double percentile) {
+        return waitHistogram.valueAtPercentile(percentile) / HISTOGRAM_UNITS_PER_SECOND;
+    }
+
     public void update(double deltaSeconds, double simulationTimeSeconds) {
         sampleAccumulator += deltaSeconds;
         while (sampleAccumulator >= SAMPLE_INTERVAL) {
@@ -44,10 +73,36 @@ public class PerformanceTracker {
     public void reset() {
         totalWaitTime = 0.0;
         completedCars = 0;
+        meanWait = 0.0;
+        waitSquaredDeviations = 0.0;
+        maxWait = 0.0;
+        waitHistogram.reset();
         sampleAccumulator = 0.0;
         pendingSamples.clear();
     }
 
+    // Undrained samples are not part of the state; consumers drain them every tick.
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(totalWaitTime);
+        out.writeLong(completedCars);
+        out.writeDouble(meanWait);
+        out.writeDouble(waitSquaredDeviations);
+        out.writeDouble(maxWait);
+        out.writeDouble(sampleAccumulator);
+        waitHistogram.writeState(out);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        reset();
+        totalWaitTime = in.readDouble();
+        completedCars = in.readLong();
+        meanWait = in.readDouble();
+        waitSquaredDeviations = in.readDouble();
+        maxWait = in.readDouble();
+        sampleAccumulator = in.readDouble();
+        waitHistogram.readState(in);
+    }
+
     public record PerformanceSample(double timeSeconds, double averageWaitSeconds) {
     }
 }
@@ -0,0 +1,107 @@
+package traffic.sim.stats;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer, single-consumer ring of (time, value) samples in preallocated slots. The producer publishes a
+// slot with a release store of the tail and the consumer frees it with a release store of the head, so neither
+// side locks or allocates. When the consumer falls a whole ring behind, new samples are dropped and counted.
+public class SampleQueue {
+    @FunctionalInterface
+    public interface SampleSink {
+        void accept(double timeSeconds, double value);
+
+        // Called by drain() before the first sample offered after a clear(); the samples before it are gone.
+        default void cleared() {
+        }
+    }
+
+    private final double[] times;
+    private final double[] values;
+    private final int mask;
+    // Next slot to read, written only by the consumer.
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, written only by the producer.
+    private final AtomicLong tail = new AtomicLong();
+    // Set by the producer's clear(): the consumer skips everything before it. Every clear moves it forward, so it
+    // also tells the consumer that a clear happened.
+    private final AtomicLong discardBefore = new AtomicLong();
+    private long producerTail;
+    private long cachedHead;
+    // Consumer's copy of the last discardBefore it acted on.
+    private long consumerDiscard;
+    private volatile long dropped;
+
+    public SampleQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        times = new double[slots];
+        values = new double[slots];
+        mask = slots - 1;
+    }
+
+    // Producer side.
+    public boolean offer(double timeSeconds, double value) {
+        long discard = discardBefore.getPlain();
+        if (producerTail - Math.max(cachedHead, discard) >= times.length) {
+            cachedHead = head.getAcquire();
+            if (producerTail - Math.max(cachedHead, discard) >= times.length) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) (producerTail & mask);
+        times[slot] = timeSeconds;
+        values[slot] = value;
+        tail.setRelease(++producerTail);
+        return true;
+    }
+
+    // Producer side: samples not yet drained are never delivered. One slot is skipped, so that discardBefore moves
+    // even when nothing was offered since the last clear. From here on the producer may reuse slots the consumer is
+    // still reading; the fence makes such a write visible only after the new discardBefore, which drain() checks.
+    public void clear() {
+        producerTail++;
+        tail.setRelease(producerTail);
+        discardBefore.setRelease(producerTail);
+        VarHandle.storeStoreFence();
+    }
+
+    // Consumer side: hands every published sample to the sink, oldest first, and returns how many there were.
+    public int drain(SampleSink sink) {
+        long discard = discardBefore.getAcquire();
+        if (discard != consumerDiscard) {
+            consumerDiscard = discard;
+            sink.cleared();
+        }
+        long from = Math.max(head.getPlain(), discard);
+        long to = tail.getAcquire();
+        for (long i = from; i < to; i++) {
+            int slot = (int) (i & mask);
+            double time = times[slot];
+            double value = values[slot];
+            VarHandle.loadLoadFence();
+            if (discardBefore.getAcquire() != discard) {
+                // Cleared meanwhile: the slot may already hold a newer sample. The next drain starts afresh.
+                head.setRelease(i);
+                return (int) (i - from);
+            }
+            sink.accept(time, value);
+        }
+        head.setRelease(to);
+        return (int) (to - from);
+    }
+
+    public int capacity() {
+        return times.length;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,182 @@
+package traffic.sim.stats;
+
+// Bounded history of a sampled value at several resolutions. Each tier is a ring buffer of fixed-width buckets
+// holding the min, max and mean of the samples that fell in them, so a long run costs the same memory as a short
+// one and a chart can read whichever tier has about as many buckets as it has points.
+public class TimeSeriesStore {
+    public static final double[] DEFAULT_BUCKETS = {1.0, 10.0, 60.0};
+    // Sample times are sums of float steps; a sample this close to a bucket edge is taken as on it.
+    private static final double EDGE_TOLERANCE = 1e-6;
+
+    private final Tier[] tiers;
+
+    public TimeSeriesStore(int capacityPerTier) {
+        this(capacityPerTier, DEFAULT_BUCKETS);
+    }
+
+    public TimeSeriesStore(int capacityPerTier, double... bucketSeconds) {
+        if (capacityPerTier <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacityPerTier);
+        }
+        tiers = new Tier[bucketSeconds.length];
+        for (int i = 0; i < bucketSeconds.length; i++) {
+            if (i > 0 && bucketSeconds[i] <= bucketSeconds[i - 1]) {
+                throw new IllegalArgumentException("Bucket widths must increase: " + bucketSeconds[i]);
+            }
+            tiers[i] = new Tier(bucketSeconds[i], capacityPerTier);
+        }
+    }
+
+    public void add(double timeSeconds, double value) {
+        for (Tier tier : tiers) {
+            tier.add(timeSeconds, value);
+        }
+    }
+
+    public void clear() {
+        for (Tier tier : tiers) {
+            tier.clear();
+        }
+    }
+
+    public int getTierCount() {
+        return tiers.length;
+    }
+
+    public Tier getTier(int index) {
+        return tiers[index];
+    }
+
+    // The finest tier that covers rangeSeconds in at most maxPoints buckets, or the coarsest one.
+    public Tier tierFor(double rangeSeconds, int maxPoints) {
+        for (Tier tier : tiers) {
+            if (rangeSeconds / tier.bucketSeconds <= maxPoints) {
+                return tier;
+            }
+        }
+        return tiers[tiers.length - 1];
+    }
+
+    public static final class Tier {
+        private final double bucketSeconds;
+        private final double[] time;
+        private final double[] min;
+        private final double[] max;
+        private final double[] mean;
+        private int head;
+        private int size;
+        private long version;
+
+        private long openBucket = Long.MIN_VALUE;
+        private double openMin;
+        private double openMax;
+        private double openSum;
+        private int openCount;
+
+        private Tier(double bucketSeconds, int capacity) {
+            this.bucketSeconds = bucketSeconds;
+            this.time = new double[capacity];
+            this.min = new double[capacity];
+            this.max = new double[capacity];
+            this.mean = new double[capacity];
+        }
+
+        // Bucket k covers ((k - 1) * width, k * width] and is stored under its end time. It is closed by the
+        // sample that lands on its end or, failing that, by the first sample of a later bucket.
+        private void add(double timeSeconds, double value) {
+            long bucket = (long) Math.ceil(timeSeconds / bucketSeconds - EDGE_TOLERANCE);
+            if (bucket != openBucket) {
+                close();
+                openBucket = bucket;
+                openMin = value;
+                openMax = value;
+                openSum = 0.0;
+            }
+            openMin = Math.min(openMin, value);
+            openMax = Math.max(openMax, value);
+            openSum += value;
+            openCount++;
+            if (timeSeconds >= bucket * bucketSeconds - EDGE_TOLERANCE * bucketSeconds) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (openCount == 0) {
+                return;
+            }
+            int slot = (head + size) % time.length;
+            if (size == time.length) {
+                head = (head + 1) % time.length;
+            } else {
+                size++;
+            }
+            time[slot] = openBucket * bucketSeconds;
+            min[slot] = openMin;
+            max[slot] = openMax;
+            mean[slot] = openSum / openCount;
+            openCount = 0;
+            version++;
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+            openBucket = Long.MIN_VALUE;
+            openCount = 0;
+            version++;
+        }
+
+        public double getBucketSeconds() {
+            return bucketSeconds;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Changes whenever a bucket is added or the tier is cleared.
+        public long getVersion() {
+            return version;
+        }
+
+        // Buckets are indexed from the oldest one kept.
+        public double time(int index) {
+            return time[slot(index)];
+        }
+
+        public double min(int index) {
+            return min[slot(index)];
+        }
+
+        public double max(int index) {
+            return max[slot(index)];
+        }
+
+        public double mean(int index) {
+            return mean[slot(index)];
+        }
+
+        // Index of the oldest bucket ending after the given time, or size() if there is none.
+        public int firstAfter(double timeSeconds) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (time[slot(mid)] > timeSeconds) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        private int slot(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for tier of size " + size);
+            }
+            return (head + index) % time.length;
+        }
+    }
+}
@@ -1,24 +1,42 @@
 package traffic.sim.stats;
 
-import traffic.sim.model.Car;
+import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 public class TrafficStatsManager {
     private static final double SAMPLE_INTERVAL_SECONDS = 1.0;
+    private static final int SAMPLE_QUEUE_CAPACITY = 4096;
 
     private double sampleAccumulator;
     private double latestTotalWait;
-    private final List<StatsSample> pendingSamples = new ArrayList<>();
+    private long sampleCount;
+    private double sampledWaitSum;
+    private double peakSampledWait;
+    // Per-direction readings taken from the lanes' running aggregates, indexed by Direction ordinal.
+    private final int[] stoppedCars = new int[Direction.values().length];
+    private final double[] currentWait = new double[Direction.values().length];
+    private final double[] cumulativeDelay = new double[Direction.values().length];
+    // Written by whichever thread runs the engine and drained by one reader, possibly on another thread.
+    private final SampleQueue pendingSamples = new SampleQueue(SAMPLE_QUEUE_CAPACITY);
 
-    public void update(double deltaSeconds, double simulationTimeSeconds, Iterable<? extends Iterable<? extends Car>> carLanes) {
-        latestTotalWait = computeTotalWait(carLanes);
+    public void update(double deltaSeconds, double simulationTimeSeconds, Iterable<Lane> lanes) {
+        double previousTotalWait = latestTotalWait;
+        latestTotalWait = computeTotalWait(lanes);
         sampleAccumulator += deltaSeconds;
         while (sampleAccumulator >= SAMPLE_INTERVAL_SECONDS) {
             sampleAccumulator -= SAMPLE_INTERVAL_SECONDS;
-            pendingSamples.add(new StatsSample(simulationTimeSeconds, latestTotalWait));
+            // A long step (event mode) spans several sample instants; waits grow linearly within it.
+            double fraction = 1.0 - sampleAccumulator / deltaSeconds;
+            double totalWait = previousTotalWait + (latestTotalWait - previousTotalWait) * fraction;
+            pendingSamples.offer(simulationTimeSeconds - sampleAccumulator, totalWait);
+            sampleCount++;
+            sampledWaitSum += totalWait;
+            peakSampledWait = Math.max(peakSampledWait, totalWait);
         }
     }
 
@@ -26,31 +44,88 @@ public class TrafficStatsManager {
         return latestTotalWait;
     }
 
-    public List<StatsSample> drainSamples() {
-        if (pendingSamples.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<StatsSample> snapshot = new ArrayList<>(pendingSamples);
-        pendingSamples.clear();
-        return snapshot;
+    public int getStoppedCars(Direction direction) {
+        return stoppedCars[direction.ordinal()];
+    }
+
+    // Sum of the current waits of cars travelling in the given direction.
+    public double getCurrentWait(Direction direction) {
+        return currentWait[direction.ordinal()];
+    }
+
+    // Vehicle-seconds of delay in the given direction since the last reset.
+    public double getCumulativeDelay(Direction direction) {
+        return cumulativeDelay[direction.ordinal()];
+    }
+
+    // Mean of the sampled total wait since the last reset, whether or not the samples were drained.
+    public double getAverageSampledWait() {
+        return sampleCount == 0 ? 0.0 : sampledWaitSum / sampleCount;
+    }
+
+    public double getPeakSampledWait() {
+        return peakSampledWait;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // Sample times and total waits since the last drain; safe to call from one thread other than the engine's.
+    public int drainSamples(SampleQueue.SampleSink sink) {
+        return pendingSamples.drain(sink);
+    }
+
+    // Samples lost because nobody drained them for a whole queue's worth of sampling intervals.
+    public long getDroppedSamples() {
+        return pendingSamples.getDropped();
     }
 
     public void reset() {
         sampleAccumulator = 0.0;
         latestTotalWait = 0.0;
+        sampleCount = 0;
+        sampledWaitSum = 0.0;
+        peakSampledWait = 0.0;
+        Arrays.fill(stoppedCars, 0);
+        Arrays.fill(currentWait, 0.0);
+        Arrays.fill(cumulativeDelay, 0.0);
         pendingSamples.clear();
     }
 
-    private double computeTotalWait(Iterable<? extends Iterable<? extends Car>> carLanes) {
+    // Samples still waiting for the reader are not saved: the reader may be draining them right now, so only it
+    // knows which ones it has seen. A restored run starts with an empty queue.
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(sampleAccumulator);
+        out.writeDouble(latestTotalWait);
+        out.writeLong(sampleCount);
+        out.writeDouble(sampledWaitSum);
+        out.writeDouble(peakSampledWait);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        reset();
+        sampleAccumulator = in.readDouble();
+        latestTotalWait = in.readDouble();
+        sampleCount = in.readLong();
+        sampledWaitSum = in.readDouble();
+        peakSampledWait = in.readDouble();
+    }
+
+    // Lanes keep their wait sums up to date as cars stop and start, so this costs one read per lane, not per car.
+    private double computeTotalWait(Iterable<Lane> lanes) {
+        Arrays.fill(stoppedCars, 0);
+        Arrays.fill(currentWait, 0.0);
+        Arrays.fill(cumulativeDelay, 0.0);
         double aggregate = 0.0;
-        for (Iterable<? extends Car> lane : carLanes) {
-            for (Car car : lane) {
-                aggregate += car.getWaitTimer();
-            }
+        for (Lane lane : lanes) {
+            int d = lane.getDirection().ordinal();
+            double wait = lane.totalWaitTimer();
+            stoppedCars[d] += lane.stoppedCount();
+            currentWait[d] += wait;
+            cumulativeDelay[d] += lane.accumulatedDelay();
+            aggregate += wait;
         }
         return aggregate;
     }
-
-    public record StatsSample(double timeSeconds, double totalWaitSeconds) {
-    }
 }
@@ -0,0 +1,58 @@
+package traffic.sim.trace;
+
+import java.nio.ByteBuffer;
+
+// Layout of a trace file:
+//   header  magic, version, world size, node count, lane count, then nodeId/direction/crossCoordinate per lane
+//   frames  length-prefixed, each self-contained: time, one byte of light states per node, then per lane the car
+//           count and each car's position and wait timer as varints (positions as deltas from the car ahead)
+//   footer  sparse (time, offset) index, then index offset, index size, frame count and the magic again
+// A trace without a footer (the recorder was not closed) is still readable; the index is rebuilt by scanning.
+final class TraceFormat {
+    static final int MAGIC = 0x54535452; // "TSTR"
+    static final short VERSION = 1;
+    static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    // Positions are stored in 1/64 px and wait timers in milliseconds.
+    static final double POSITION_SCALE = 64.0;
+    static final double WAIT_SCALE = 1000.0;
+
+    // One index entry per simulated second keeps seeks to a binary search plus a short forward scan.
+    static final double INDEX_INTERVAL_SECONDS = 1.0;
+
+    // Worst-case encoded sizes, used to make sure a whole frame fits in the write buffer.
+    static final int MAX_VARINT_BYTES = 10;
+    static final int FRAME_OVERHEAD_BYTES = Integer.BYTES + Double.BYTES;
+
+    private TraceFormat() {
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,105 @@
+package traffic.sim.trace;
+
+import traffic.sim.model.Direction;
+import traffic.sim.model.TrafficLight;
+
+import java.util.Arrays;
+
+// One decoded frame; reused by TraceReplayer.next so replay does not allocate per frame.
+public class TraceFrame {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final TrafficLight.LightState[] LIGHT_STATES = TrafficLight.LightState.values();
+
+    private final TraceReplayer.LaneInfo[] lanes;
+    private final byte[] lights;
+    private final int[] carCounts;
+    private final int[] laneStart;
+    private double[] positions = new double[256];
+    private double[] waitTimers = new double[256];
+    private double time;
+
+    TraceFrame(TraceReplayer.LaneInfo[] lanes, int nodeCount) {
+        this.lanes = lanes;
+        this.lights = new byte[nodeCount];
+        this.carCounts = new int[lanes.length];
+        this.laneStart = new int[lanes.length];
+    }
+
+    void setTime(double time) {
+        this.time = time;
+    }
+
+    void setLights(int node, byte packed) {
+        lights[node] = packed;
+    }
+
+    void setCarCount(int lane, int start, int count) {
+        laneStart[lane] = start;
+        carCounts[lane] = count;
+        if (start + count > positions.length) {
+            int capacity = Math.max(start + count, positions.length * 2);
+            positions = Arrays.copyOf(positions, capacity);
+            waitTimers = Arrays.copyOf(waitTimers, capacity);
+        }
+    }
+
+    void setCar(int slot, double position, double waitTimer) {
+        positions[slot] = position;
+        waitTimers[slot] = waitTimer;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public TraceReplayer.LaneInfo getLane(int lane) {
+        return lanes[lane];
+    }
+
+    public TrafficLight.LightState getLight(int node, Direction direction) {
+        return LIGHT_STATES[(lights[node] >>> (direction.ordinal() * 2)) & 0x3];
+    }
+
+    public int getCarCount(int lane) {
+        return carCounts[lane];
+    }
+
+    public int getTotalCars() {
+        int total = 0;
+        for (int count : carCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public double getPosition(int lane, int index) {
+        return positions[laneStart[lane] + index];
+    }
+
+    public double getWaitTimer(int lane, int index) {
+        return waitTimers[laneStart[lane] + index];
+    }
+
+    // A car that moved in its last tick has its wait timer reset to zero.
+    public boolean isMoving(int lane, int index) {
+        return waitTimers[laneStart[lane] + index] == 0.0;
+    }
+
+    public double getX(int lane, int index) {
+        Direction direction = lanes[lane].direction();
+        return direction.dx() != 0 ? getPosition(lane, index) * direction.dx() : lanes[lane].crossCoordinate();
+    }
+
+    public double getY(int lane, int index) {
+        Direction direction = lanes[lane].direction();
+        return direction.dy() != 0 ? getPosition(lane, index) * direction.dy() : lanes[lane].crossCoordinate();
+    }
+
+    static Direction direction(int ordinal) {
+        return DIRECTIONS[ordinal];
+    }
+}
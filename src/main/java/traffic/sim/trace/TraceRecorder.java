@@ -0,0 +1,167 @@
+package traffic.sim.trace;
+
+import traffic.sim.SimulationEngine;
+import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
+import traffic.sim.model.TrafficLight;
+import traffic.sim.network.NetworkNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Streams one frame per recorded tick to a file; see TraceFormat for the layout.
+public class TraceRecorder implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final FileChannel channel;
+    private final List<NetworkNode> nodes;
+    private final Lane[] lanes;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long bufferStart;
+    private double[] indexTimes = new double[64];
+    private long[] indexOffsets = new long[64];
+    private int indexSize;
+    private double nextIndexTime = Double.NEGATIVE_INFINITY;
+    private long frameCount;
+
+    private TraceRecorder(FileChannel channel, SimulationEngine engine) throws IOException {
+        this.channel = channel;
+        this.nodes = engine.getNetwork().getNodes();
+        List<Lane> ordered = new ArrayList<>();
+        for (NetworkNode node : nodes) {
+            for (Direction direction : DIRECTIONS) {
+                ordered.add(node.getLane(direction));
+            }
+        }
+        this.lanes = ordered.toArray(new Lane[0]);
+        writeHeader(engine);
+    }
+
+    public static TraceRecorder open(Path path, SimulationEngine engine) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new TraceRecorder(channel, engine);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader(SimulationEngine engine) throws IOException {
+        ensureCapacity(64 + lanes.length * (Integer.BYTES + 1 + Double.BYTES));
+        buffer.putInt(TraceFormat.MAGIC);
+        buffer.putShort(TraceFormat.VERSION);
+        buffer.putDouble(engine.getNetwork().getWidth());
+        buffer.putDouble(engine.getNetwork().getHeight());
+        buffer.putInt(nodes.size());
+        buffer.putInt(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            buffer.putInt(nodes.get(i / DIRECTIONS.length).getId());
+            buffer.put((byte) lanes[i].getDirection().ordinal());
+            buffer.putDouble(lanes[i].getCrossCoordinate());
+        }
+    }
+
+    public void recordFrame(double simulationSeconds) throws IOException {
+        int cars = 0;
+        for (Lane lane : lanes) {
+            cars += lane.size();
+        }
+        ensureCapacity(TraceFormat.FRAME_OVERHEAD_BYTES + nodes.size()
+                + (long) lanes.length * TraceFormat.MAX_VARINT_BYTES + 2L * cars * TraceFormat.MAX_VARINT_BYTES);
+
+        int frameStart = buffer.position();
+        if (simulationSeconds >= nextIndexTime) {
+            addIndexEntry(simulationSeconds, bufferStart + frameStart);
+            nextIndexTime = simulationSeconds + TraceFormat.INDEX_INTERVAL_SECONDS;
+        }
+        buffer.position(frameStart + Integer.BYTES);
+        buffer.putDouble(simulationSeconds);
+        for (NetworkNode node : nodes) {
+            int packed = 0;
+            for (Direction direction : DIRECTIONS) {
+                TrafficLight.LightState state = node.getIntersection().getLights().get(direction).getState();
+                packed |= state.ordinal() << (direction.ordinal() * 2);
+            }
+            buffer.put((byte) packed);
+        }
+        for (Lane lane : lanes) {
+            int size = lane.size();
+            TraceFormat.putVarLong(buffer, size);
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                long position = Math.round(lane.position(i) * TraceFormat.POSITION_SCALE);
+                TraceFormat.putVarLong(buffer, TraceFormat.zigZag(position - previous));
+                TraceFormat.putVarLong(buffer, Math.round(lane.waitTimer(i) * TraceFormat.WAIT_SCALE));
+                previous = position;
+            }
+        }
+        buffer.putInt(frameStart, buffer.position() - frameStart - Integer.BYTES);
+        frameCount++;
+    }
+
+    private void addIndexEntry(double time, long offset) {
+        if (indexSize == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexTimes[indexSize] = time;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+
+    private void ensureCapacity(long bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        flush();
+        if (buffer.capacity() < bytes) {
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Frame too large to record: " + bytes + " bytes");
+            }
+            buffer = ByteBuffer.allocateDirect((int) Math.max(bytes, (long) buffer.capacity() * 2));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bufferStart = channel.position();
+        buffer.clear();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = bufferStart + buffer.position();
+            for (int i = 0; i < indexSize; i++) {
+                ensureCapacity(Double.BYTES + Long.BYTES);
+                buffer.putDouble(indexTimes[i]);
+                buffer.putLong(indexOffsets[i]);
+            }
+            ensureCapacity(TraceFormat.TRAILER_BYTES);
+            buffer.putLong(indexOffset);
+            buffer.putInt(indexSize);
+            buffer.putLong(frameCount);
+            buffer.putInt(TraceFormat.MAGIC);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package traffic.sim.trace;
+
+import traffic.sim.model.Direction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Reads a trace through a memory mapping; no engine is involved. The file is mapped one window at a time, moved
+// frame by frame as replay advances and to an index entry on a seek, so traces past 2 GB replay like small ones.
+public class TraceReplayer implements Closeable {
+    public record LaneInfo(int nodeId, Direction direction, double crossCoordinate) {
+    }
+
+    // A single mapping is limited to 2 GB; windows are far smaller so remapping stays cheap on any address space.
+    private static final int WINDOW_BYTES = 1 << 28;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final double width;
+    private final double height;
+    private final int nodeCount;
+    private final LaneInfo[] lanes;
+    private final long firstFrameOffset;
+    private final long framesEnd;
+    private final double[] indexTimes;
+    private final long[] indexOffsets;
+    private final long frameCount;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    private TraceReplayer(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        ByteBuffer header = map(0, (int) Math.min(fileSize, WINDOW_BYTES));
+        try {
+            if (header.getInt() != TraceFormat.MAGIC) {
+                throw new IOException("Not a trace file");
+            }
+            short version = header.getShort();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            this.width = header.getDouble();
+            this.height = header.getDouble();
+            this.nodeCount = header.getInt();
+            this.lanes = new LaneInfo[header.getInt()];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new LaneInfo(header.getInt(), TraceFrame.direction(header.get()), header.getDouble());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated trace header", e);
+        }
+        this.firstFrameOffset = header.position();
+
+        if (fileSize - firstFrameOffset >= TraceFormat.TRAILER_BYTES
+                && readInt(fileSize - Integer.BYTES) == TraceFormat.MAGIC) {
+            ByteBuffer trailer = window(fileSize - TraceFormat.TRAILER_BYTES, TraceFormat.TRAILER_BYTES);
+            this.framesEnd = trailer.getLong();
+            int entries = trailer.getInt();
+            this.frameCount = trailer.getLong();
+            this.indexTimes = new double[entries];
+            this.indexOffsets = new long[entries];
+            ByteBuffer index = window(framesEnd, entries * (Double.BYTES + Long.BYTES));
+            for (int i = 0; i < entries; i++) {
+                indexTimes[i] = index.getDouble();
+                indexOffsets[i] = index.getLong();
+            }
+        } else {
+            // Unfinished recording: rebuild the index from the frame length prefixes, dropping a torn last frame.
+            double[] times = new double[64];
+            long[] offsets = new long[64];
+            int entries = 0;
+            long frames = 0;
+            double nextIndexTime = Double.NEGATIVE_INFINITY;
+            long offset = firstFrameOffset;
+            while (offset + TraceFormat.FRAME_OVERHEAD_BYTES <= fileSize) {
+                ByteBuffer prefix = window(offset, TraceFormat.FRAME_OVERHEAD_BYTES);
+                int length = prefix.getInt();
+                if (length < Double.BYTES || offset + Integer.BYTES + length > fileSize) {
+                    break;
+                }
+                double time = prefix.getDouble();
+                if (time >= nextIndexTime) {
+                    if (entries == times.length) {
+                        times = Arrays.copyOf(times, entries * 2);
+                        offsets = Arrays.copyOf(offsets, entries * 2);
+                    }
+                    times[entries] = time;
+                    offsets[entries] = offset;
+                    entries++;
+                    nextIndexTime = time + TraceFormat.INDEX_INTERVAL_SECONDS;
+                }
+                offset += Integer.BYTES + length;
+                frames++;
+            }
+            this.framesEnd = offset;
+            this.frameCount = frames;
+            this.indexTimes = Arrays.copyOf(times, entries);
+            this.indexOffsets = Arrays.copyOf(offsets, entries);
+        }
+        this.position = firstFrameOffset;
+    }
+
+    public static TraceReplayer open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new TraceReplayer(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public TraceFrame newFrame() {
+        return new TraceFrame(lanes, nodeCount);
+    }
+
+    // Positions the replayer on the first frame at or after the given time: a binary search over the
+    // per-second index followed by a scan of at most one second of frames. Returns false past the end.
+    public boolean seek(double simulationSeconds) {
+        int entry = Arrays.binarySearch(indexTimes, simulationSeconds);
+        if (entry < 0) {
+            entry = Math.max(0, -entry - 2);
+        }
+        long offset = indexTimes.length == 0 ? firstFrameOffset : indexOffsets[entry];
+        while (offset < framesEnd) {
+            ByteBuffer prefix = window(offset, TraceFormat.FRAME_OVERHEAD_BYTES);
+            int length = prefix.getInt();
+            if (prefix.getDouble() >= simulationSeconds) {
+                break;
+            }
+            offset += Integer.BYTES + length;
+        }
+        position = offset;
+        return offset < framesEnd;
+    }
+
+    // Decodes the next frame into the given holder; returns false at the end of the trace.
+    public boolean next(TraceFrame frame) {
+        if (position >= framesEnd) {
+            return false;
+        }
+        int length = readInt(position);
+        if (length < Double.BYTES || position + Integer.BYTES + length > framesEnd) {
+            throw new IllegalStateException("Corrupt trace frame at offset " + position);
+        }
+        ByteBuffer data = window(position + Integer.BYTES, length);
+        int frameEnd = data.position() + length;
+        data.limit(frameEnd);
+        try {
+            frame.setTime(data.getDouble());
+            for (int node = 0; node < nodeCount; node++) {
+                frame.setLights(node, data.get());
+            }
+            int slot = 0;
+            for (int lane = 0; lane < lanes.length; lane++) {
+                int count = (int) TraceFormat.getVarLong(data);
+                frame.setCarCount(lane, slot, count);
+                long carPosition = 0;
+                for (int i = 0; i < count; i++) {
+                    carPosition += TraceFormat.unZigZag(TraceFormat.getVarLong(data));
+                    double wait = TraceFormat.getVarLong(data) / TraceFormat.WAIT_SCALE;
+                    frame.setCar(slot++, carPosition / TraceFormat.POSITION_SCALE, wait);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Corrupt trace frame", e);
+        } finally {
+            data.limit(data.capacity());
+        }
+        position += Integer.BYTES + length;
+        return true;
+    }
+
+    // Returns the mapping positioned at the given file offset, moving the window there when the next length bytes
+    // are not all inside it.
+    private ByteBuffer window(long offset, int length) {
+        if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            int size = (int) Math.max(length, Math.min(WINDOW_BYTES, fileSize - offset));
+            try {
+                window = map(offset, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            windowStart = offset;
+        }
+        window.position((int) (offset - windowStart));
+        return window;
+    }
+
+    private int readInt(long offset) {
+        return window(offset, Integer.BYTES).getInt();
+    }
+
+    private MappedByteBuffer map(long offset, int size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public double getStartTime() {
+        return frameCount == 0 ? 0.0 : window(firstFrameOffset + Integer.BYTES, Double.BYTES).getDouble();
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Replays a trace as fast as it decodes; with --at prints the state at the given simulated second.
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].equals("--help")) {
+            System.out.println("Usage: TraceReplayer FILE [--at SECONDS]");
+            return;
+        }
+        Double at = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--at") && i + 1 < args.length) {
+                at = Double.parseDouble(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        try (TraceReplayer replayer = open(Path.of(args[0]))) {
+            TraceFrame frame = replayer.newFrame();
+            if (at != null) {
+                if (!replayer.seek(at) || !replayer.next(frame)) {
+                    System.out.println("No frame at or after " + at + " s");
+                    return;
+                }
+                printFrame(replayer, frame);
+                return;
+            }
+
+            long frames = 0;
+            long carSamples = 0;
+            double lastTime = 0.0;
+            long start = System.nanoTime();
+            while (replayer.next(frame)) {
+                frames++;
+                carSamples += frame.getTotalCars();
+                lastTime = frame.getTime();
+            }
+            double wallSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            double simulated = lastTime - replayer.getStartTime();
+            System.out.printf(Locale.ROOT, "Frames:             %d (%d car samples)%n", frames, carSamples);
+            System.out.printf(Locale.ROOT, "Simulated time:     %.1f s%n", simulated);
+            System.out.printf(Locale.ROOT, "Replay time:        %.3f s (%.0fx real time)%n", wallSeconds,
+                    wallSeconds <= 0.0 ? Double.POSITIVE_INFINITY : simulated / wallSeconds);
+        }
+    }
+
+    private static void printFrame(TraceReplayer replayer, TraceFrame frame) {
+        System.out.printf(Locale.ROOT, "t = %.3f s%n", frame.getTime());
+        for (int lane = 0; lane < replayer.getLaneCount(); lane++) {
+            LaneInfo info = frame.getLane(lane);
+            System.out.printf(Locale.ROOT, "node %d %-5s %-6s %d cars", info.nodeId(), info.direction(),
+                    frame.getLight(info.nodeId(), info.direction()), frame.getCarCount(lane));
+            for (int i = 0; i < frame.getCarCount(lane); i++) {
+                System.out.printf(Locale.ROOT, " (%.1f, %.1f; wait %.2f)", frame.getX(lane, i), frame.getY(lane, i),
+                        frame.getWaitTimer(lane, i));
+            }
+            System.out.println();
+        }
+    }
+}
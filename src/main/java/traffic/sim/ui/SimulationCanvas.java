@@ -2,109 +2,398 @@ package traffic.sim.ui;
 
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import traffic.sim.SimulationEngine;
-import traffic.sim.model.Car;
 import traffic.sim.model.Direction;
+import traffic.sim.model.Lane;
 import traffic.sim.model.TrafficLight;
+import traffic.sim.model.VehicleClass;
+import traffic.sim.network.NetworkNode;
+import traffic.sim.runtime.FrameSnapshot;
 
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SimulationCanvas extends Canvas {
     private static final double ROAD_WIDTH = 120.0;
+    private static final Color[] CAR_PALETTE = new Color[]{
+            Color.DODGERBLUE, Color.ORANGE, Color.CRIMSON,
+            Color.SEAGREEN, Color.GOLDENROD, Color.MEDIUMPURPLE
+    };
+    private static final Color INTERSECTION_COLOR = Color.web("#2f2f2f");
+    private static final Color[] DENSITY_PALETTE = densityPalette(16);
+    // Below LABEL_SCALE wait labels are unreadable and cars are plain rectangles; below CAR_SCALE a car is under
+    // a few pixels long and lanes are drawn as density bars instead.
+    private static final double LABEL_SCALE = 0.75;
+    private static final double CAR_SCALE = 0.25;
+    private static final double DENSITY_SEGMENT_PIXELS = 8.0;
+    private static final double MIN_BAR_PIXELS = 3.0;
+    private static final double INDEX_CELL_SIZE = 256.0;
+    private static final double LIGHT_OFFSET = 20.0;
+    private static final double LIGHT_SIZE = 12.0;
+    private static final double ZOOM_STEP = 1.1;
+
     private final SimulationEngine engine;
+    private final WaitLabels waitLabels = new WaitLabels();
+    private final Viewport viewport = new Viewport();
+    private final double carLength;
+    // Margin for culling, so a vehicle is drawn as long as any part of it is in view.
+    private final double maxVehicleLength;
+    private final double carWidth;
+    private final List<NetworkNode> nodes;
+
+    // Lane geometry, by engine lane index: direction, cross coordinate and the range of positions cars can have.
+    private final Direction[] laneDirection;
+    private final double[] laneCross;
+    private final double[] laneLow;
+    private final double[] laneHigh;
+    private final SpatialIndex laneIndex;
+    private final int[] visibleLanes;
+    private final int[] visibleFrom;
+    private final int[] visibleTo;
+
+    // Road extents around each intersection, by node index.
+    private final double[] roadMinX;
+    private final double[] roadMaxX;
+    private final double[] roadMinY;
+    private final double[] roadMaxY;
+    private final SpatialIndex nodeIndex;
+    private final int[] visibleNodes;
+
+    private WritableImage background;
+    private long backgroundVersion = -1L;
+    private long lastBackgroundVersion = -1L;
+    private long totalWaitTenths = -1L;
+    private String totalWaitText = "";
+    private double dragX;
+    private double dragY;
 
     public SimulationCanvas(double width, double height, SimulationEngine engine) {
         super(width, height);
         this.engine = engine;
+        this.carLength = engine.getCarLength();
+        double longest = carLength;
+        for (VehicleClass type : VehicleClass.values()) {
+            longest = Math.max(longest, type.getLength());
+        }
+        this.maxVehicleLength = longest;
+        this.carWidth = engine.getCarWidth();
+        this.nodes = engine.getNetwork().getNodes();
+
+        List<Lane> lanes = engine.getLanes();
+        Map<Lane, Double> upstreamExit = new IdentityHashMap<>();
+        for (Lane lane : lanes) {
+            if (lane.getDownstream() != null) {
+                upstreamExit.put(lane.getDownstream(), lane.getExitPosition());
+            }
+        }
+        int laneCount = lanes.size();
+        laneDirection = new Direction[laneCount];
+        laneCross = new double[laneCount];
+        laneLow = new double[laneCount];
+        laneHigh = new double[laneCount];
+        double[] minX = new double[laneCount];
+        double[] minY = new double[laneCount];
+        double[] maxX = new double[laneCount];
+        double[] maxY = new double[laneCount];
+        for (int l = 0; l < laneCount; l++) {
+            Lane lane = lanes.get(l);
+            Direction direction = lane.getDirection();
+            laneDirection[l] = direction;
+            laneCross[l] = lane.getCrossCoordinate();
+            laneLow[l] = upstreamExit.getOrDefault(lane, engine.getEntryPosition(direction)) - maxVehicleLength;
+            laneHigh[l] = lane.getExitPosition() + maxVehicleLength;
+            double along1 = laneLow[l] * (direction.dx() + direction.dy());
+            double along2 = laneHigh[l] * (direction.dx() + direction.dy());
+            double alongMin = Math.min(along1, along2);
+            double alongMax = Math.max(along1, along2);
+            double crossMin = laneCross[l] - maxVehicleLength;
+            double crossMax = laneCross[l] + maxVehicleLength;
+            minX[l] = direction.dx() != 0 ? alongMin : crossMin;
+            maxX[l] = direction.dx() != 0 ? alongMax : crossMax;
+            minY[l] = direction.dx() != 0 ? crossMin : alongMin;
+            maxY[l] = direction.dx() != 0 ? crossMax : alongMax;
+        }
+        laneIndex = new SpatialIndex(minX, minY, maxX, maxY, INDEX_CELL_SIZE);
+        visibleLanes = new int[laneCount];
+        visibleFrom = new int[laneCount];
+        visibleTo = new int[laneCount];
+
+        Map<Lane, Integer> laneNumbers = new IdentityHashMap<>();
+        for (int l = 0; l < laneCount; l++) {
+            laneNumbers.put(lanes.get(l), l);
+        }
+        int nodeCount = nodes.size();
+        roadMinX = new double[nodeCount];
+        roadMaxX = new double[nodeCount];
+        roadMinY = new double[nodeCount];
+        roadMaxY = new double[nodeCount];
+        double[] boxMinX = new double[nodeCount];
+        double[] boxMinY = new double[nodeCount];
+        double[] boxMaxX = new double[nodeCount];
+        double[] boxMaxY = new double[nodeCount];
+        double reach = engine.getIntersectionHalfSize() + LIGHT_OFFSET + LIGHT_SIZE;
+        for (int n = 0; n < nodeCount; n++) {
+            NetworkNode node = nodes.get(n);
+            roadMinX[n] = roadMinY[n] = Double.POSITIVE_INFINITY;
+            roadMaxX[n] = roadMaxY[n] = Double.NEGATIVE_INFINITY;
+            for (Lane lane : node.getLanes().values()) {
+                int l = laneNumbers.get(lane);
+                boolean horizontal = lane.getDirection().dx() != 0;
+                if (horizontal) {
+                    roadMinX[n] = Math.min(roadMinX[n], minX[l] + maxVehicleLength);
+                    roadMaxX[n] = Math.max(roadMaxX[n], maxX[l] - maxVehicleLength);
+                } else {
+                    roadMinY[n] = Math.min(roadMinY[n], minY[l] + maxVehicleLength);
+                    roadMaxY[n] = Math.max(roadMaxY[n], maxY[l] - maxVehicleLength);
+                }
+            }
+            boxMinX[n] = Math.min(roadMinX[n], node.getCenterX() - reach);
+            boxMaxX[n] = Math.max(roadMaxX[n], node.getCenterX() + reach);
+            boxMinY[n] = Math.min(roadMinY[n], node.getCenterY() - reach);
+            boxMaxY[n] = Math.max(roadMaxY[n], node.getCenterY() + reach);
+        }
+        nodeIndex = new SpatialIndex(boxMinX, boxMinY, boxMaxX, boxMaxY, INDEX_CELL_SIZE);
+        visibleNodes = new int[nodeCount];
+
         GraphicsContext gc = getGraphicsContext2D();
         gc.setFont(Font.font("Monospaced", 12));
+        widthProperty().addListener((obs, old, value) -> background = null);
+        heightProperty().addListener((obs, old, value) -> background = null);
+        setOnMousePressed(evt -> {
+            dragX = evt.getX();
+            dragY = evt.getY();
+        });
+        setOnMouseDragged(evt -> {
+            viewport.pan(evt.getX() - dragX, evt.getY() - dragY);
+            dragX = evt.getX();
+            dragY = evt.getY();
+        });
+        setOnScroll(evt -> {
+            if (evt.getDeltaY() != 0.0) {
+                viewport.zoomAt(evt.getX(), evt.getY(), Math.pow(ZOOM_STEP, evt.getDeltaY() / 40.0));
+            }
+        });
+        setOnMouseClicked(evt -> {
+            if (evt.getClickCount() == 2) {
+                fitView();
+            }
+        });
+        fitView();
     }
 
-    public void render() {
-        GraphicsContext gc = getGraphicsContext2D();
-        double width = getWidth();
-        double height = getHeight();
-        double centerX = width / 2.0;
-        double centerY = height / 2.0;
+    public void fitView() {
+        viewport.fit(0.0, 0.0, engine.getNetwork().getWidth(), engine.getNetwork().getHeight(), getWidth(), getHeight());
+    }
 
-        gc.setFill(Color.DARKSLATEGRAY);
-        gc.fillRect(0, 0, width, height);
+    // Draws a frame published by the simulation thread; the engine itself is only asked for fixed geometry.
+    public void render(FrameSnapshot frame) {
+        GraphicsContext gc = getGraphicsContext2D();
+        double scale = viewport.getScale();
+        double minX = viewport.worldX(0.0);
+        double minY = viewport.worldY(0.0);
+        double maxX = viewport.worldX(getWidth());
+        double maxY = viewport.worldY(getHeight());
 
-        gc.setFill(Color.DIMGRAY);
-        gc.fillRect(0, centerY - ROAD_WIDTH / 2.0, width, ROAD_WIDTH);
-        gc.fillRect(centerX - ROAD_WIDTH / 2.0, 0, ROAD_WIDTH, height);
+        // Roads only change with the view, so they are copied in as one cached image. While the view is moving,
+        // drawing them directly is cheaper than reading back a snapshot that is stale by the next frame.
+        gc.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+        long version = viewport.getVersion();
+        if (background != null && backgroundVersion == version) {
+            gc.drawImage(background, 0, 0);
+        } else {
+            drawBackground(gc, minX, minY, maxX, maxY);
+            if (version == lastBackgroundVersion) {
+                background = snapshot(null, background);
+                backgroundVersion = version;
+            }
+            lastBackgroundVersion = version;
+        }
 
-        gc.setFill(Color.DARKGRAY);
-        gc.fillRect(centerX - ROAD_WIDTH / 6.0, 0, ROAD_WIDTH / 3.0, height);
-        gc.fillRect(0, centerY - ROAD_WIDTH / 6.0, width, ROAD_WIDTH / 3.0);
+        gc.setTransform(scale, 0.0, 0.0, scale, -viewport.getOriginX() * scale, -viewport.getOriginY() * scale);
+        int lanes = laneIndex.query(minX, minY, maxX, maxY, visibleLanes);
+        if (scale >= CAR_SCALE) {
+            drawCars(gc, frame, lanes, minX, minY, maxX, maxY, scale >= LABEL_SCALE);
+        } else {
+            drawDensity(gc, frame, lanes, minX, minY, maxX, maxY, scale);
+        }
+        drawTrafficLights(gc, frame, nodeIndex.query(minX, minY, maxX, maxY, visibleNodes));
 
-        drawIntersectionBox(gc, centerX, centerY);
-        drawTrafficLights(gc, centerX, centerY);
-        drawCars(gc);
-        drawStatistics(gc);
+        gc.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+        drawStatistics(gc, frame);
     }
 
-    private void drawIntersectionBox(GraphicsContext gc, double centerX, double centerY) {
+    private void drawBackground(GraphicsContext gc, double minX, double minY, double maxX, double maxY) {
+        gc.setFill(Color.DARKSLATEGRAY);
+        gc.fillRect(0, 0, getWidth(), getHeight());
+
+        double scale = viewport.getScale();
+        gc.setTransform(scale, 0.0, 0.0, scale, -viewport.getOriginX() * scale, -viewport.getOriginY() * scale);
+        int count = nodeIndex.query(minX, minY, maxX, maxY, visibleNodes);
+        // Roads, markings and boxes each go in their own pass so a neighbour's road never covers them.
+        gc.setFill(Color.DIMGRAY);
+        for (int k = 0; k < count; k++) {
+            int n = visibleNodes[k];
+            NetworkNode node = nodes.get(n);
+            gc.fillRect(roadMinX[n], node.getCenterY() - ROAD_WIDTH / 2.0, roadMaxX[n] - roadMinX[n], ROAD_WIDTH);
+            gc.fillRect(node.getCenterX() - ROAD_WIDTH / 2.0, roadMinY[n], ROAD_WIDTH, roadMaxY[n] - roadMinY[n]);
+        }
+        gc.setFill(Color.DARKGRAY);
+        for (int k = 0; k < count; k++) {
+            int n = visibleNodes[k];
+            NetworkNode node = nodes.get(n);
+            gc.fillRect(node.getCenterX() - ROAD_WIDTH / 6.0, roadMinY[n], ROAD_WIDTH / 3.0, roadMaxY[n] - roadMinY[n]);
+            gc.fillRect(roadMinX[n], node.getCenterY() - ROAD_WIDTH / 6.0, roadMaxX[n] - roadMinX[n], ROAD_WIDTH / 3.0);
+        }
         double size = engine.getIntersectionHalfSize() * 2.0;
-        gc.setFill(Color.web("#2f2f2f"));
-        gc.fillRect(centerX - size / 2.0, centerY - size / 2.0, size, size);
+        gc.setFill(INTERSECTION_COLOR);
+        for (int k = 0; k < count; k++) {
+            NetworkNode node = nodes.get(visibleNodes[k]);
+            gc.fillRect(node.getCenterX() - size / 2.0, node.getCenterY() - size / 2.0, size, size);
+        }
+        gc.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
     }
 
-    private void drawTrafficLights(GraphicsContext gc, double centerX, double centerY) {
-        double offset = engine.getIntersectionHalfSize() + 20.0;
+    private void drawTrafficLights(GraphicsContext gc, FrameSnapshot frame, int count) {
+        double offset = engine.getIntersectionHalfSize() + LIGHT_OFFSET;
         double radius = 10.0;
-        Map<Direction, TrafficLight> lights = engine.getIntersection().getLights();
-
-        drawLight(gc, centerX - offset, centerY - offset, lights.get(Direction.NORTH));
-        drawLight(gc, centerX + offset - radius, centerY - offset, lights.get(Direction.EAST));
-        drawLight(gc, centerX - offset, centerY + offset - radius, lights.get(Direction.WEST));
-        drawLight(gc, centerX + offset - radius, centerY + offset - radius, lights.get(Direction.SOUTH));
+        for (int k = 0; k < count; k++) {
+            int n = visibleNodes[k];
+            double centerX = nodes.get(n).getCenterX();
+            double centerY = nodes.get(n).getCenterY();
+            drawLight(gc, centerX - offset, centerY - offset, frame.getLight(n, Direction.NORTH));
+            drawLight(gc, centerX + offset - radius, centerY - offset, frame.getLight(n, Direction.EAST));
+            drawLight(gc, centerX - offset, centerY + offset - radius, frame.getLight(n, Direction.WEST));
+            drawLight(gc, centerX + offset - radius, centerY + offset - radius, frame.getLight(n, Direction.SOUTH));
+        }
     }
 
-    private void drawLight(GraphicsContext gc, double x, double y, TrafficLight light) {
-        double radius = 12.0;
-        Color fill = switch (light.getState()) {
+    private void drawLight(GraphicsContext gc, double x, double y, TrafficLight.LightState state) {
+        Color fill = switch (state) {
             case GREEN -> Color.LIMEGREEN;
             case YELLOW -> Color.GOLD;
             case RED -> Color.DARKRED;
         };
         gc.setFill(fill);
-        gc.fillOval(x, y, radius, radius);
+        gc.fillOval(x, y, LIGHT_SIZE, LIGHT_SIZE);
     }
 
-    private void drawCars(GraphicsContext gc) {
-        double carLength = engine.getCarLength();
-        double carWidth = engine.getCarWidth();
-        for (Car car : engine.getAllCars()) {
-            Direction direction = car.getDirection();
-            double drawX;
-            double drawY;
-            double w;
-            double h;
-            if (direction.dx() != 0) {
-                w = carLength;
-                h = carWidth;
-                drawX = car.getX() - w / 2.0;
-                drawY = car.getY() - h / 2.0;
-            } else {
-                w = carWidth;
-                h = carLength;
-                drawX = car.getX() - w / 2.0;
-                drawY = car.getY() - h / 2.0;
+    // Only cars inside the view are visited: lanes come from the spatial index and, since positions within a lane
+    // are sorted, the visible cars of a lane are found by binary search.
+    private void drawCars(GraphicsContext gc, FrameSnapshot frame, int lanes,
+                          double minX, double minY, double maxX, double maxY, boolean detailed) {
+        int lastColor = -1;
+        for (int k = 0; k < lanes; k++) {
+            int lane = visibleLanes[k];
+            Direction direction = laneDirection[lane];
+            int from = frame.firstAtOrBelow(lane, rangeHigh(direction, minX, minY, maxX, maxY) + maxVehicleLength);
+            int to = frame.firstBelow(lane, rangeLow(direction, minX, minY, maxX, maxY) - maxVehicleLength);
+            visibleFrom[k] = from;
+            visibleTo[k] = to;
+            boolean horizontal = direction.dx() != 0;
+            for (int i = from; i < to; i++) {
+                double w = horizontal ? frame.getLength(i) : carWidth;
+                double h = horizontal ? carWidth : frame.getLength(i);
+                int color = frame.getColorIndex(i) % CAR_PALETTE.length;
+                if (color != lastColor) {
+                    gc.setFill(CAR_PALETTE[color]);
+                    lastColor = color;
+                }
+                if (detailed) {
+                    gc.fillRoundRect(frame.getX(i) - w / 2.0, frame.getY(i) - h / 2.0, w, h, 6, 6);
+                } else {
+                    gc.fillRect(frame.getX(i) - w / 2.0, frame.getY(i) - h / 2.0, w, h);
+                }
             }
-            gc.setFill(car.getColor());
-            gc.fillRoundRect(drawX, drawY, w, h, 6, 6);
+        }
+        if (!detailed) {
+            return;
+        }
 
-            gc.setFill(Color.BLACK);
-            gc.fillText(String.format("%.1f", car.getWaitTimer()), car.getX() - 12, drawY - 4);
+        // Labels go in a second pass so the fill changes once instead of twice per car.
+        gc.setFill(Color.BLACK);
+        for (int k = 0; k < lanes; k++) {
+            boolean horizontal = laneDirection[visibleLanes[k]].dx() != 0;
+            for (int i = visibleFrom[k]; i < visibleTo[k]; i++) {
+                double h = horizontal ? carWidth : frame.getLength(i);
+                gc.fillText(waitLabels.label(frame.getWaitTimer(i)), frame.getX(i) - 12, frame.getY(i) - h / 2.0 - 4);
+            }
         }
     }
 
-    private void drawStatistics(GraphicsContext gc) {
+    // Zoomed out, each lane becomes bars of a fixed on-screen length coloured by the share of road the cars in it
+    // cover. A bar's count is two binary searches, so the cost follows the bars drawn, not the cars behind them.
+    private void drawDensity(GraphicsContext gc, FrameSnapshot frame, int lanes,
+                             double minX, double minY, double maxX, double maxY, double scale) {
+        double segment = DENSITY_SEGMENT_PIXELS / scale;
+        double barWidth = Math.max(carWidth, MIN_BAR_PIXELS / scale);
+        for (int k = 0; k < lanes; k++) {
+            int lane = visibleLanes[k];
+            Direction direction = laneDirection[lane];
+            double low = Math.max(laneLow[lane], rangeLow(direction, minX, minY, maxX, maxY));
+            double high = Math.min(laneHigh[lane], rangeHigh(direction, minX, minY, maxX, maxY));
+            long first = (long) Math.floor(low / segment);
+            long last = (long) Math.floor(high / segment);
+            for (long s = first; s <= last; s++) {
+                double start = s * segment;
+                double end = start + segment;
+                int from = frame.firstBelow(lane, end);
+                int to = frame.firstBelow(lane, start);
+                if (from == to) {
+                    continue;
+                }
+                // Trucks and buses cover more of the segment than cars do.
+                double occupancy = Math.min(1.0, frame.getLengthBetween(from, to) / segment);
+                gc.setFill(DENSITY_PALETTE[(int) Math.round(occupancy * (DENSITY_PALETTE.length - 1))]);
+                double sign = direction.dx() + direction.dy();
+                double alongMin = Math.min(start * sign, end * sign);
+                if (direction.dx() != 0) {
+                    gc.fillRect(alongMin, laneCross[lane] - barWidth / 2.0, segment, barWidth);
+                } else {
+                    gc.fillRect(laneCross[lane] - barWidth / 2.0, alongMin, barWidth, segment);
+                }
+            }
+        }
+    }
+
+    // Lowest and highest lane position inside the view: positions run along x for EAST, -x for WEST, -y for
+    // NORTH and y for SOUTH.
+    private static double rangeLow(Direction direction, double minX, double minY, double maxX, double maxY) {
+        return switch (direction) {
+            case EAST -> minX;
+            case WEST -> -maxX;
+            case NORTH -> -maxY;
+            case SOUTH -> minY;
+        };
+    }
+
+    private static double rangeHigh(Direction direction, double minX, double minY, double maxX, double maxY) {
+        return switch (direction) {
+            case EAST -> maxX;
+            case WEST -> -minX;
+            case NORTH -> -minY;
+            case SOUTH -> maxY;
+        };
+    }
+
+    private void drawStatistics(GraphicsContext gc, FrameSnapshot frame) {
+        long tenths = Math.round(frame.getTotalWait() * 10.0);
+        if (tenths != totalWaitTenths) {
+            totalWaitTenths = tenths;
+            totalWaitText = "Total wait: " + waitLabels.label(frame.getTotalWait()) + " s";
+        }
         gc.setFill(Color.WHITE);
-        String text = "Total wait: " + String.format("%.1f s", engine.getTotalWait());
-        gc.fillText(text, 20, getHeight() - 20);
+        gc.fillText(totalWaitText, 20, getHeight() - 20);
+    }
+
+    private static Color[] densityPalette(int steps) {
+        Color[] palette = new Color[steps];
+        for (int i = 0; i < steps; i++) {
+            palette[i] = Color.LIMEGREEN.interpolate(Color.CRIMSON, i / (double) (steps - 1));
+        }
+        return palette;
     }
 }
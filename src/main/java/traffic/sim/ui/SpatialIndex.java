@@ -0,0 +1,100 @@
+package traffic.sim.ui;
+
+import java.util.Arrays;
+
+// Uniform grid over fixed world-space boxes such as lanes and intersections. A query visits only the cells the
+// rectangle covers and reports each item once, so its cost follows the visible area rather than the item count.
+final class SpatialIndex {
+    private final double cellSize;
+    private final double originX;
+    private final double originY;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellItems;
+    private final int[] stamp;
+    private int queryStamp;
+
+    SpatialIndex(double[] minX, double[] minY, double[] maxX, double[] maxY, double cellSize) {
+        this.cellSize = cellSize;
+        double lowX = Double.POSITIVE_INFINITY;
+        double lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        double highY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < minX.length; i++) {
+            lowX = Math.min(lowX, minX[i]);
+            lowY = Math.min(lowY, minY[i]);
+            highX = Math.max(highX, maxX[i]);
+            highY = Math.max(highY, maxY[i]);
+        }
+        if (minX.length == 0) {
+            lowX = lowY = highX = highY = 0.0;
+        }
+        this.originX = lowX;
+        this.originY = lowY;
+        this.columns = (int) ((highX - lowX) / cellSize) + 1;
+        this.rows = (int) ((highY - lowY) / cellSize) + 1;
+        this.stamp = new int[minX.length];
+
+        // Counting sort of (cell, item) pairs: count per cell, turn counts into offsets, then place the items.
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < minX.length; i++) {
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++) {
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < minX.length; i++) {
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++) {
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++) {
+                    int cell = row * columns + column;
+                    cellItems[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    int size() {
+        return stamp.length;
+    }
+
+    // Writes the items whose cells overlap the rectangle into out, which must hold size() entries.
+    int query(double minX, double minY, double maxX, double maxY, int[] out) {
+        if (++queryStamp == 0) {
+            Arrays.fill(stamp, 0);
+            queryStamp = 1;
+        }
+        int count = 0;
+        for (int row = row(minY); row <= row(maxY); row++) {
+            for (int column = column(minX); column <= column(maxX); column++) {
+                int cell = row * columns + column;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int item = cellItems[k];
+                    if (stamp[item] != queryStamp) {
+                        stamp[item] = queryStamp;
+                        out[count++] = item;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int column(double worldX) {
+        return clamp((int) Math.floor((worldX - originX) / cellSize), columns);
+    }
+
+    private int row(double worldY) {
+        return clamp((int) Math.floor((worldY - originY) / cellSize), rows);
+    }
+
+    private static int clamp(int cell, int cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+}
@@ -0,0 +1,65 @@
+package traffic.sim.ui;
+
+// Maps world coordinates to canvas pixels: screen = (world - origin) * scale. The version changes on every pan or
+// zoom, so anything cached for one view can tell when it is stale.
+final class Viewport {
+    static final double MIN_SCALE = 0.02;
+    static final double MAX_SCALE = 8.0;
+
+    private double scale = 1.0;
+    private double originX;
+    private double originY;
+    private long version;
+
+    // Shows the whole world rectangle, never magnified beyond 1:1.
+    void fit(double minX, double minY, double maxX, double maxY, double width, double height) {
+        scale = clampScale(Math.min(1.0, Math.min(width / (maxX - minX), height / (maxY - minY))));
+        originX = (minX + maxX) / 2.0 - width / 2.0 / scale;
+        originY = (minY + maxY) / 2.0 - height / 2.0 / scale;
+        version++;
+    }
+
+    void pan(double screenDx, double screenDy) {
+        originX -= screenDx / scale;
+        originY -= screenDy / scale;
+        version++;
+    }
+
+    // Zooms by factor while keeping the world point under the given pixel in place.
+    void zoomAt(double screenX, double screenY, double factor) {
+        double worldX = worldX(screenX);
+        double worldY = worldY(screenY);
+        scale = clampScale(scale * factor);
+        originX = worldX - screenX / scale;
+        originY = worldY - screenY / scale;
+        version++;
+    }
+
+    double worldX(double screenX) {
+        return originX + screenX / scale;
+    }
+
+    double worldY(double screenY) {
+        return originY + screenY / scale;
+    }
+
+    double getScale() {
+        return scale;
+    }
+
+    double getOriginX() {
+        return originX;
+    }
+
+    double getOriginY() {
+        return originY;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    private static double clampScale(double value) {
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, value));
+    }
+}
@@ -0,0 +1,36 @@
+package traffic.sim.ui;
+
+// Label text for wait times rounded to a tenth of a second. Each distinct value is formatted once and reused, so
+// drawing a frame does not build strings; values past the cache are formatted into one reusable buffer.
+final class WaitLabels {
+    private static final int CACHED_TENTHS = 10_000;
+
+    private final String[] cache = new String[CACHED_TENTHS];
+    private final StringBuilder overflow = new StringBuilder(16);
+    private long overflowTenths = -1L;
+    private String overflowText = "";
+
+    String label(double seconds) {
+        long tenths = Math.round(Math.max(0.0, seconds) * 10.0);
+        if (tenths < CACHED_TENTHS) {
+            int index = (int) tenths;
+            String text = cache[index];
+            if (text == null) {
+                text = format(tenths);
+                cache[index] = text;
+            }
+            return text;
+        }
+        if (tenths != overflowTenths) {
+            overflowTenths = tenths;
+            overflowText = format(tenths);
+        }
+        return overflowText;
+    }
+
+    private String format(long tenths) {
+        overflow.setLength(0);
+        overflow.append(tenths / 10).append('.').append(tenths % 10);
+        return overflow.toString();
+    }
+}